@@ -0,0 +1,163 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public final class Benchmark
+{
+    /**
+     * Benchmark.java
+     * A small micro benchmark harness in the spirit of JMH, so benchmarks can run straight from the
+     * IDE without extra libraries. Every benchmark is warmed up, then timed over several iterations
+     * of a fixed duration; the result is the mean time per operation and its standard deviation.
+     * Results can be compared to a baseline file written by a previous run.
+     */
+    public interface Operation
+    {
+        /**
+         * Runs the benchmarked code once
+         * @return any value computed, so the JIT can not remove the work
+         */
+        Object run() throws Exception;
+    }
+
+    private static final long WARMUP_NANOS = 1000000000L;
+    private static final int ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 500000000L;
+    /**
+     * Difference to the baseline, in percent, above which a result is reported as a regression
+     */
+    private static final double REGRESSION_PERCENT = 10;
+    /**
+     * Consumes the results of the operations, like the JMH Blackhole
+     */
+    public static volatile Object sink;
+
+    private final List<String> names = new ArrayList<String>();
+    private final List<double[]> results = new ArrayList<double[]>();
+
+    /**
+     * Warms up and measures an operation, then prints its result
+     * @param name the name of the benchmark
+     * @param operation the code to measure
+     */
+    public void measure(String name, Operation operation) throws Exception
+    {
+        long batch = 1;
+        long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+        while (System.nanoTime() < warmupEnd)
+        {
+            long start = System.nanoTime();
+            for (long i = 0; i < batch; i++)
+            {
+                sink = operation.run();
+            }
+            if (System.nanoTime() - start < ITERATION_NANOS / 100)
+            {
+                batch *= 2;
+            }
+        }
+        double[] perOp = new double[ITERATIONS];
+        for (int it = 0; it < ITERATIONS; it++)
+        {
+            long ops = 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do
+            {
+                for (long i = 0; i < batch; i++)
+                {
+                    sink = operation.run();
+                }
+                ops += batch;
+                elapsed = System.nanoTime() - start;
+            }
+            while (elapsed < ITERATION_NANOS);
+            perOp[it] = (double) elapsed / ops;
+        }
+        double mean = 0;
+        for (double value : perOp)
+        {
+            mean += value;
+        }
+        mean /= ITERATIONS;
+        double variance = 0;
+        for (double value : perOp)
+        {
+            variance += (value - mean) * (value - mean);
+        }
+        double error = Math.sqrt(variance / (ITERATIONS - 1));
+        names.add(name);
+        results.add(new double[]{mean, error});
+        System.out.println(format(name, mean, error));
+    }
+    /**
+     * Prints every result next to its baseline and flags the regressions
+     * @param baselineFile a file written from the output of a previous run
+     * @return the number of regressions
+     */
+    public int compare(String baselineFile) throws IOException
+    {
+        Map<String, Double> baseline = readBaseline(baselineFile);
+        int regressions = 0;
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "%-40s %14s %14s %9s", "Benchmark", "Baseline ns/op", "Now ns/op", "Change"));
+        for (int i = 0; i < names.size(); i++)
+        {
+            Double before = baseline.get(names.get(i));
+            double now = results.get(i)[0];
+            if (before == null)
+            {
+                System.out.println(String.format(Locale.ROOT, "%-40s %14s %14.1f %9s", names.get(i), "-", now, "new"));
+                continue;
+            }
+            double change = (now - before) * 100 / before;
+            boolean regression = change > REGRESSION_PERCENT;
+            if (regression)
+            {
+                regressions++;
+            }
+            System.out.println(String.format(Locale.ROOT, "%-40s %14.1f %14.1f %+8.1f%%%s", names.get(i), before, now, change,
+                    regression ? "  REGRESSION" : ""));
+        }
+        return regressions;
+    }
+    /**
+     * Reads a baseline: every line that is not a comment holds a benchmark name and its mean ns/op
+     * @param file the baseline file
+     * @return the mean of every benchmark, by name
+     */
+    private static Map<String, Double> readBaseline(String file) throws IOException
+    {
+        Map<String, Double> baseline = new LinkedHashMap<String, Double>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file)))
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                {
+                    continue;
+                }
+                String[] fields = line.split("\\s+");
+                baseline.put(fields[0], Double.parseDouble(fields[1]));
+            }
+        }
+        return baseline;
+    }
+    /**
+     * @param name the name of the benchmark
+     * @param mean the mean time per operation in nanoseconds
+     * @param error the standard deviation of the mean over the iterations
+     * @return a result line, in the format of the baseline file
+     */
+    private static String format(String name, double mean, double error)
+    {
+        return String.format(Locale.ROOT, "%-40s %14.1f  +- %.1f ns/op", name, mean, error);
+    }
+}
@@ -0,0 +1,381 @@
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.swing.SwingUtilities;
+
+public final class SolitaireBenchmarks
+{
+    /**
+     * SolitaireBenchmarks.java
+     * Benchmarks of dealing, shuffling, move validation, hints, solving, saving, replaying, painting,
+     * animating, loading the images and serving moves.
+     * Run it from the project directory with -Djava.awt.headless=true and src/assets copied to the
+     * class output as assets, as the IDE build does;
+     * pass the path of a baseline file, for example bench/baseline.txt, to compare the results to it.
+     */
+    private SolitaireBenchmarks()
+    {
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        Benchmark benchmark = new Benchmark();
+        final DealRandom random = new DealRandom(42);
+        final byte[] codes = KlondikeDeal.newOrderedCodes();
+
+        benchmark.measure("Deck.new.level1", new Benchmark.Operation() {
+            public Object run() {
+                return new Deck("level1");
+            }
+        });
+        benchmark.measure("Deck.shuffleDeckLevel1", new Benchmark.Operation() {
+            public Object run() {
+                KlondikeDeal.shuffleDeckLevel1(codes, random);
+                return codes;
+            }
+        });
+        benchmark.measure("Deck.shuffleDeckLevel2", new Benchmark.Operation() {
+            public Object run() {
+                KlondikeDeal.shuffleDeckLevel2(codes, random);
+                return codes;
+            }
+        });
+
+        AssetLoader.getSheet();
+        final GamePanel panel = new GamePanel("level1");
+        panel.setSize(800, 700);
+        final KlondikeDeal deal = KlondikeDeal.fromNumber("level1", 42);
+        benchmark.measure("GamePanel.setInitialLayout", new Benchmark.Operation() {
+            public Object run() {
+                panel.setInitialLayout(new Deck(deal));
+                return panel;
+            }
+        });
+        // a new game started in place from the level buttons, alternating two deals
+        final GamePanel restarted = new GamePanel(deal);
+        restarted.setSize(800, 700);
+        final KlondikeDeal[] deals = {deal, KlondikeDeal.fromNumber("level2", 43)};
+        benchmark.measure("GamePanel.newGame", new Benchmark.Operation() {
+            private int count;
+
+            public Object run() {
+                restarted.newGame(deals[count++ & 1]);
+                return restarted;
+            }
+        });
+
+        final Pile pile = panel.getMainPiles()[6];
+        final Card top = pile.getCardOnTop();
+        final MouseEvent onTop = mouseEvent(panel, MouseEvent.MOUSE_PRESSED, top.getcornerX() + 5, top.getcornerY() + 5);
+        final DragSlice drag = new DragSlice();
+        benchmark.measure("DragSlice.pickUp", new Benchmark.Operation() {
+            public Object run() {
+                drag.pickUp(pile, KlondikeState.MAIN_PILE_0 + 6, pile.getSize() - 1);
+                drag.release();
+                return drag;
+            }
+        });
+        final PileIndex pileIndex = panel.getPileIndex();
+        final int[] targets = new int[KlondikeState.PILE_COUNT];
+        benchmark.measure("PileIndex.pileAt", new Benchmark.Operation() {
+            public Object run() {
+                return pileIndex.pileAt(top.getcornerX() + 5, top.getcornerY() + 5);
+            }
+        });
+        benchmark.measure("PileIndex.dropTargets", new Benchmark.Operation() {
+            public Object run() {
+                return pileIndex.dropTargets(top.getcornerX() - 40, top.getcornerY(), targets);
+            }
+        });
+
+        final java.awt.event.MouseListener listener = panel.getMouseListeners()[0];
+        final MouseEvent press = onTop;
+        final MouseEvent release = mouseEvent(panel, MouseEvent.MOUSE_RELEASED, top.getcornerX() + 5, top.getcornerY() + 5);
+        benchmark.measure("MouseListener.mouseReleased.rejected", new Benchmark.Operation() {
+            public Object run() {
+                listener.mousePressed(press);
+                listener.mouseReleased(release);
+                return panel.getDrag();
+            }
+        });
+
+        final byte[] saved = panel.save();
+        benchmark.measure("SavedGame.encode", new Benchmark.Operation() {
+            public Object run() {
+                return panel.save();
+            }
+        });
+        benchmark.measure("SavedGame.decode", new Benchmark.Operation() {
+            public Object run() throws Exception {
+                return SavedGame.decode(saved);
+            }
+        });
+
+        final GameRecording recording = new GameRecording(deal);
+        final DealRandom player = new DealRandom(7);
+        KlondikeState played = new KlondikeState(deal);
+        int[] moves = new int[KlondikeState.MAX_MOVES];
+        for (int i = 0; i < 4096; i++) {
+            int count = played.legalMoves(moves);
+            if (count == 0) {
+                break;
+            }
+            int applied = played.apply(moves[player.nextInt(count)]);
+            recording.recordMove(applied, i * 500L);
+            if (player.nextInt(16) == 0) {
+                played.undo(applied);
+                recording.recordUndo(applied, i * 500L + 250);
+            }
+        }
+        final GameReplayer replayer = new GameReplayer(recording);
+        benchmark.measure("GameReplayer.replayAll", new Benchmark.Operation() {
+            public Object run() {
+                return replayer.replayAll();
+            }
+        });
+        benchmark.measure("GameReplayer.seek", new Benchmark.Operation() {
+            public Object run() {
+                replayer.seek(player.nextInt(recording.getEventCount() + 1));
+                return replayer.getState();
+            }
+        });
+
+        replayer.seek(recording.getEventCount() / 2);
+        final KlondikeState position = new KlondikeState(replayer.getState());
+        final MoveTracker tracker = new MoveTracker(position);
+        final int[] legal = new int[KlondikeState.MAX_MOVES];
+        benchmark.measure("KlondikeState.legalMoves", new Benchmark.Operation() {
+            public Object run() {
+                return position.legalMoves(legal);
+            }
+        });
+        final int mainToMain = Move.make(KlondikeState.MAIN_PILE_0 + 6, KlondikeState.MAIN_PILE_0 + 5, 1);
+        benchmark.measure("MoveTracker.update", new Benchmark.Operation() {
+            public Object run() {
+                tracker.update(mainToMain);
+                return tracker.hasCardMove();
+            }
+        });
+        benchmark.measure("MoveTracker.hint", new Benchmark.Operation() {
+            public Object run() {
+                return tracker.hint();
+            }
+        });
+
+        // a loaded position whose only win splits a stack: the jack of clubs lies out of sequence on
+        // the ten of hearts, which has to go onto that jack to uncover the nine of hearts, so the
+        // solver must not prune the split that moves the jack away; it doubles as a check
+        final byte[] split = {
+            1, 48,                            // 10 of C
+            2, 0x40 | 38, 25,                 // K of D face down, K of H
+            3, 0x40 | 12, 0x40 | 11, 24,      // K of S, Q of S face down, Q of H
+            4, 0x40 | 21, 22, 49, 23,         // 9 of H face down, 10 of H, J of C, J of H
+            2, 0x40 | 50, 51,                 // Q of C face down, K of C
+            0, 0,                             // two empty piles
+            10, 20, 37, 47,                   // suit piles up to J of S, 8 of H, Q of D, 9 of C
+            0, 0                              // no stock and no waste
+        };
+        final KlondikeState splitOnly = new KlondikeState(deal);
+        splitOnly.readFrom(new DataInputStream(new ByteArrayInputStream(split)));
+        final KlondikeSolver solver = new KlondikeSolver();
+        if (!solver.solve(splitOnly).isSolved()) {
+            throw new IllegalStateException("The solver did not find the win that splits a stack");
+        }
+        benchmark.measure("KlondikeSolver.solve.split", new Benchmark.Operation() {
+            public Object run() {
+                return solver.solve(splitOnly);
+            }
+        });
+
+        // recording a duration, done for every paint and every mouse event
+        final LatencyHistogram histogram = new LatencyHistogram();
+        benchmark.measure("LatencyHistogram.record", new Benchmark.Operation() {
+            private long nanos = 12345;
+
+            public Object run() {
+                nanos = nanos * 6364136223846793005L + 1442695040888963407L;
+                histogram.record((nanos >>> 40) * 16);
+                return histogram;
+            }
+        });
+
+        final BufferedImage image = new BufferedImage(800, 700, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D graphic = image.createGraphics();
+        benchmark.measure("GamePanel.paintComponent", new Benchmark.Operation() {
+            public Object run() {
+                panel.paintComponent(graphic);
+                return image;
+            }
+        });
+        final Pile first = panel.getMainPiles()[0];
+        benchmark.measure("GamePanel.paintComponent.invalidated", new Benchmark.Operation() {
+            public Object run() {
+                first.lift(first.getSize() - 1);
+                first.putBack();
+                panel.paintComponent(graphic);
+                return image;
+            }
+        });
+        graphic.dispose();
+
+        // a frame of the animations, moving the cards in flight and painting them: one card drawn
+        // from the stock, and the 28 cards of the deal, frozen partway
+        measureFrame(benchmark, "CardAnimator.frame.one", false);
+        measureFrame(benchmark, "CardAnimator.frame.deal", true);
+
+        // the table zoomed by 1.5, painted once the images are scaled, the cards to 110x146
+        final GamePanel zoomed = new GamePanel(KlondikeDeal.fromNumber("level1", 1));
+        zoomed.setSize(1200, 990);
+        zoomed.doLayout();
+        TableLayout layout = zoomed.getTableLayout();
+        Map<BufferedImage, Dimension> scaleTargets = new HashMap<BufferedImage, Dimension>();
+        for (BufferedImage card : CardImages.getImages())
+        {
+            scaleTargets.put(card, new Dimension(layout.getCardPixelWidth(), layout.getCardPixelHeight()));
+        }
+        int razvanSize = layout.toPixels(zoomed.razvan.getSize());
+        scaleTargets.put(zoomed.razvan.getImage(), new Dimension(razvanSize, razvanSize));
+        final CountDownLatch scaled = new CountDownLatch(1);
+        if (ScaledImageCache.prepare(scaleTargets, new Runnable() {
+            public void run() {
+                scaled.countDown();
+            }
+        }))
+        {
+            scaled.await(30, TimeUnit.SECONDS);
+        }
+        final BufferedImage zoomedImage = new BufferedImage(1200, 990, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D zoomedGraphic = zoomedImage.createGraphics();
+        final Pile zoomedFirst = zoomed.getMainPiles()[0];
+        benchmark.measure("GamePanel.paintComponent.invalidated.zoomed", new Benchmark.Operation() {
+            public Object run() {
+                zoomedFirst.lift(zoomedFirst.getSize() - 1);
+                zoomedFirst.putBack();
+                zoomed.paintComponent(zoomedGraphic);
+                return zoomedImage;
+            }
+        });
+        zoomedGraphic.dispose();
+        final BufferedImage back = CardImages.getBackImage();
+        benchmark.measure("ScaledImageCache.scale", new Benchmark.Operation() {
+            public Object run() {
+                return ScaledImageCache.scale(back, 110, 146);
+            }
+        });
+
+        benchmark.measure("SpriteSheet.readResources", new Benchmark.Operation() {
+            public Object run() throws Exception {
+                return SpriteSheet.readResources();
+            }
+        });
+        final File images = new File(SpriteSheet.IMAGE_DIRECTORY);
+        benchmark.measure("AssetPacker.pack", new Benchmark.Operation() {
+            public Object run() throws Exception {
+                return AssetPacker.pack(images);
+            }
+        });
+
+        // a move on a table of the game server, from sending the request to reading the reply
+        GameServer server = new GameServer(0, 1);
+        server.start();
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+        socket.setTcpNoDelay(true);
+        final BufferedReader replies = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        final OutputStream requests = socket.getOutputStream();
+        requests.write("NEW level1 42\n".getBytes(StandardCharsets.US_ASCII));
+        replies.readLine();
+        final byte[] drawRequest = "DRAW 0\n".getBytes(StandardCharsets.US_ASCII);
+        benchmark.measure("GameServer.draw", new Benchmark.Operation() {
+            public Object run() throws Exception {
+                requests.write(drawRequest);
+                return replies.readLine();
+            }
+        });
+        socket.close();
+        server.close();
+
+        if (args.length > 0)
+        {
+            int regressions = benchmark.compare(args[0]);
+            System.exit(regressions == 0 ? 0 : 1);
+        }
+        System.exit(0);
+    }
+    /**
+     * Measures a frame of the animations of a new panel at a fixed time, so the cards stay in
+     * flight. It runs on the Event Dispatch Thread, where the clock of the animations would
+     * otherwise land the cards in the middle of the measure.
+     * @param benchmark the benchmark
+     * @param name the name of the measure
+     * @param deal whether to deal the cards, or else to draw one from the stock
+     */
+    private static void measureFrame(final Benchmark benchmark, final String name, final boolean deal)
+            throws Exception
+    {
+        final Exception[] failure = new Exception[1];
+        SwingUtilities.invokeAndWait(new Runnable() {
+            public void run() {
+                final GamePanel panel = new GamePanel(KlondikeDeal.fromNumber("level1", 1));
+                panel.setSize(800, 700);
+                final CardAnimator animator = panel.getAnimator();
+                if (deal)
+                {
+                    animator.deal();
+                }
+                else
+                {
+                    panel.playMove(Move.draw());
+                }
+                final long nanos = System.nanoTime() + (deal ? 500 : 60) * 1000000L;
+                final BufferedImage image = new BufferedImage(800, 700, BufferedImage.TYPE_INT_RGB);
+                final Graphics2D graphic = image.createGraphics();
+                try
+                {
+                    benchmark.measure(name, new Benchmark.Operation() {
+                        public Object run() {
+                            animator.frame(nanos);
+                            panel.paintComponent(graphic);
+                            return image;
+                        }
+                    });
+                }
+                catch (Exception e)
+                {
+                    failure[0] = e;
+                }
+                graphic.dispose();
+                animator.finish();
+            }
+        });
+        if (failure[0] != null)
+        {
+            throw failure[0];
+        }
+    }
+    /**
+     * Builds a left button mouse event on the panel
+     * @param panel the panel that receives the event
+     * @param id the type of the event
+     * @param x the x location of the pointer
+     * @param y the y location of the pointer
+     * @return the mouse event
+     */
+    private static MouseEvent mouseEvent(GamePanel panel, int id, int x, int y)
+    {
+        return new MouseEvent(panel, id, 0, 0, x, y, 1, false, MouseEvent.BUTTON1);
+    }
+}
@@ -0,0 +1,177 @@
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.SwingUtilities;
+
+public final class AssetLoader
+{
+    /**
+     * AssetLoader.java
+     * Decodes the images of the game in the background, from the start of main, so the window is
+     * shown before the images are ready. Until then getLoadedSheet returns null and the cards are
+     * drawn as placeholders; the code that drew them asks to be told with whenLoaded, and repaints.
+     *
+     * The decoding runs on a small pool of daemon threads. The packed sprite sheet is a single
+     * decode on one of them, overlapping the creation of the window on the main thread; when the
+     * sheet is not on the classpath, the loose images are decoded in parallel on the whole pool.
+     */
+    private static final int THREAD_COUNT = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(THREAD_COUNT, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "Assets-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private static final FutureTask<SpriteSheet> SHEET = new FutureTask<SpriteSheet>(new Callable<SpriteSheet>() {
+        public SpriteSheet call() {
+            SpriteSheet sheet = load();
+            loadedNanos = System.nanoTime();
+            return sheet;
+        }
+    }) {
+        protected void done() {
+            List<Runnable> tasks;
+            synchronized (LISTENERS)
+            {
+                tasks = new ArrayList<Runnable>(LISTENERS);
+                LISTENERS.clear();
+            }
+            for (Runnable task : tasks)
+            {
+                SwingUtilities.invokeLater(task);
+            }
+        }
+    };
+    private static final AtomicBoolean STARTED = new AtomicBoolean();
+    /**
+     * The tasks to run on the Event Dispatch Thread once the sheet is loaded
+     */
+    private static final List<Runnable> LISTENERS = new ArrayList<Runnable>();
+    private static volatile long startNanos;
+    private static volatile long loadedNanos;
+
+    private AssetLoader()
+    {
+    }
+    /**
+     * Starts decoding the images in the background, if it has not started yet
+     */
+    public static void start()
+    {
+        if (STARTED.compareAndSet(false, true))
+        {
+            startNanos = System.nanoTime();
+            EXECUTOR.execute(SHEET);
+        }
+    }
+    /**
+     * @return the sprite sheet of the game, waiting for it to be decoded if needed
+     */
+    public static SpriteSheet getSheet()
+    {
+        start();
+        boolean interrupted = false;
+        try
+        {
+            while (true)
+            {
+                try
+                {
+                    return SHEET.get();
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+        }
+        catch (ExecutionException e)
+        {
+            throw new IllegalStateException("Error loading the images", e.getCause());
+        }
+        finally
+        {
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    /**
+     * @return the sprite sheet of the game, or null if it is not decoded yet
+     */
+    public static SpriteSheet getLoadedSheet()
+    {
+        return SHEET.isDone() ? getSheet() : null;
+    }
+    /**
+     * Runs a task on the Event Dispatch Thread once the images are decoded, right away if they are
+     * @param task the task
+     */
+    public static void whenLoaded(Runnable task)
+    {
+        synchronized (LISTENERS)
+        {
+            if (!SHEET.isDone())
+            {
+                LISTENERS.add(task);
+                return;
+            }
+        }
+        SwingUtilities.invokeLater(task);
+    }
+    /**
+     * @return the daemon threads the images are decoded on, also used to scale them (see ScaledImageCache)
+     */
+    static ExecutorService getExecutor()
+    {
+        return EXECUTOR;
+    }
+    /**
+     * @return how long decoding the images took, in milliseconds, or -1 if it is not done
+     */
+    public static long getLoadMillis()
+    {
+        long loaded = loadedNanos;
+        return loaded == 0 ? -1 : (loaded - startNanos) / 1000000;
+    }
+    /**
+     * Reads the sheet from the classpath, or packs the loose images if it is not there
+     * @return the sheet, empty if no image could be read
+     */
+    private static SpriteSheet load()
+    {
+        try
+        {
+            SpriteSheet sheet = SpriteSheet.readResources();
+            if (sheet != null)
+            {
+                return sheet;
+            }
+            System.out.println("No sprite sheet on the classpath, reading the images from " + SpriteSheet.IMAGE_DIRECTORY);
+            return AssetPacker.pack(new File(SpriteSheet.IMAGE_DIRECTORY), EXECUTOR);
+        }
+        catch (IOException e)
+        {
+            System.out.println("Error reading the images: " + e.getMessage());
+            return new SpriteSheet(new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB),
+                    Collections.<String>emptyList(), Collections.<Rectangle>emptyList());
+        }
+    }
+}
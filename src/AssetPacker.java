@@ -0,0 +1,210 @@
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import javax.imageio.ImageIO;
+
+public final class AssetPacker
+{
+    /**
+     * AssetPacker.java
+     * Packs the loose images of the game into a SpriteSheet. Run it from the project directory
+     * after adding or changing an image:
+     *     java AssetPacker [images directory] [output directory]
+     * which reads every GIF and PNG under images and writes src/assets/sprites.png and
+     * src/assets/sprites.idx, where the build copies them to the classpath.
+     *
+     * The images are placed on shelves: sorted by height, tallest first, and put left to right
+     * until a shelf is full. The images of the game are mostly cards of the same size, so the
+     * sheet wastes little space. The output only depends on the images, so packing twice gives
+     * the same files.
+     */
+    /**
+     * Width of the sheet, unless an image is wider
+     */
+    public static final int SHEET_WIDTH = 1024;
+    public static final String DEFAULT_OUTPUT_DIRECTORY = "src/assets";
+
+    private AssetPacker()
+    {
+    }
+
+    public static void main(String[] args)
+    {
+        File source = new File(args.length > 0 ? args[0] : SpriteSheet.IMAGE_DIRECTORY);
+        File target = new File(args.length > 1 ? args[1] : DEFAULT_OUTPUT_DIRECTORY);
+        try
+        {
+            SpriteSheet sheet = pack(source);
+            sheet.write(target);
+            System.out.println("Packed " + sheet.getNames().size() + " images in a " + sheet.getSheet().getWidth()
+                    + "x" + sheet.getSheet().getHeight() + " sheet in " + target);
+        }
+        catch (IOException e)
+        {
+            System.out.println("Error packing the images: " + e.getMessage());
+        }
+    }
+    /**
+     * Reads every image of a directory and its subdirectories and packs them in a sheet
+     * @param directory the directory
+     * @return the sheet, where every image is named by its path relative to the directory
+     * @throws IOException if the directory or an image can not be read
+     */
+    public static SpriteSheet pack(File directory) throws IOException
+    {
+        return pack(directory, null);
+    }
+    /**
+     * Reads every image of a directory and its subdirectories, decoding them in parallel, and
+     * packs them in a sheet
+     * @param directory the directory
+     * @param executor the executor to decode the images on, or null to decode them on the
+     *                 calling thread; called from one of its threads, it needs another one
+     * @return the sheet, where every image is named by its path relative to the directory
+     * @throws IOException if the directory or an image can not be read
+     */
+    public static SpriteSheet pack(final File directory, ExecutorService executor) throws IOException
+    {
+        final List<String> names = new ArrayList<String>();
+        collect(directory, "", names);
+        if (names.isEmpty())
+        {
+            throw new IOException("No images in " + directory);
+        }
+        List<Callable<BufferedImage>> decodes = new ArrayList<Callable<BufferedImage>>();
+        for (final String name : names)
+        {
+            decodes.add(new Callable<BufferedImage>() {
+                public BufferedImage call() throws IOException {
+                    BufferedImage image = ImageIO.read(new File(directory, name));
+                    if (image == null)
+                    {
+                        throw new IOException("Can not decode " + name);
+                    }
+                    return image;
+                }
+            });
+        }
+        final List<BufferedImage> images = new ArrayList<BufferedImage>();
+        try
+        {
+            if (executor == null)
+            {
+                for (Callable<BufferedImage> decode : decodes)
+                {
+                    images.add(decode.call());
+                }
+            }
+            else
+            {
+                for (Future<BufferedImage> image : executor.invokeAll(decodes))
+                {
+                    images.add(image.get());
+                }
+            }
+        }
+        catch (ExecutionException e)
+        {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause()
+                    : new IOException("Error decoding the images", e.getCause());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while decoding the images", e);
+        }
+        catch (IOException e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            throw new IOException("Error decoding the images", e);
+        }
+        Integer[] order = new Integer[names.size()];
+        for (int i = 0; i < order.length; i++)
+        {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                int byHeight = images.get(b).getHeight() - images.get(a).getHeight();
+                return byHeight != 0 ? byHeight : names.get(a).compareTo(names.get(b));
+            }
+        });
+        int width = SHEET_WIDTH;
+        for (BufferedImage image : images)
+        {
+            width = Math.max(width, image.getWidth());
+        }
+        List<Rectangle> areas = new ArrayList<Rectangle>(Collections.<Rectangle>nCopies(names.size(), null));
+        int x = 0;
+        int y = 0;
+        int shelfHeight = 0;
+        for (int i : order)
+        {
+            BufferedImage image = images.get(i);
+            if (x + image.getWidth() > width)
+            {
+                x = 0;
+                y += shelfHeight;
+                shelfHeight = 0;
+            }
+            areas.set(i, new Rectangle(x, y, image.getWidth(), image.getHeight()));
+            x += image.getWidth();
+            shelfHeight = Math.max(shelfHeight, image.getHeight());
+        }
+        BufferedImage sheet = new BufferedImage(width, y + shelfHeight, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphic = sheet.createGraphics();
+        for (int i = 0; i < names.size(); i++)
+        {
+            graphic.drawImage(images.get(i), areas.get(i).x, areas.get(i).y, null);
+        }
+        graphic.dispose();
+        return new SpriteSheet(SpriteSheet.toDrawable(sheet), names, areas);
+    }
+    /**
+     * Adds the paths of the images of a directory and its subdirectories, sorted by name
+     * @param directory the directory
+     * @param prefix the path of the directory relative to the images directory
+     * @param names the list to add the paths to
+     * @throws IOException if the directory can not be read
+     */
+    private static void collect(File directory, String prefix, List<String> names) throws IOException
+    {
+        String[] children = directory.list();
+        if (children == null)
+        {
+            throw new IOException("Can not read " + directory);
+        }
+        Arrays.sort(children);
+        for (String child : children)
+        {
+            File file = new File(directory, child);
+            String lower = child.toLowerCase();
+            if (file.isDirectory())
+            {
+                collect(file, prefix + child + "/", names);
+            }
+            else if (lower.endsWith(".gif") || lower.endsWith(".png"))
+            {
+                if ((prefix + child).indexOf(' ') >= 0)
+                {
+                    throw new IOException("The name of " + file + " has a space");
+                }
+                names.add(prefix + child);
+            }
+        }
+    }
+}
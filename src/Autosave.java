@@ -0,0 +1,164 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+public final class Autosave
+{
+    /**
+     * Autosave.java
+     * Keeps the game in progress in a file so it can be resumed when the game starts again. The
+     * game is encoded on the calling thread (see SavedGame.encode, a few microseconds) and written
+     * by a background thread, so saving after every move never makes the Event Dispatch Thread
+     * wait for the disk. When moves come faster than the disk, only the latest save is written.
+     *
+     * Every write goes to a temporary file that then replaces the save in one step, so a crash
+     * while writing never leaves a broken save behind.
+     */
+    private final Path file;
+    private final Path temporaryFile;
+    private final ExecutorService writer;
+    /**
+     * The latest save not written yet, or null
+     */
+    private final AtomicReference<byte[]> pending = new AtomicReference<byte[]>();
+    private final Runnable writePending = new Runnable() {
+        public void run() {
+            byte[] saved = pending.getAndSet(null);
+            if (saved != null) {
+                write(saved);
+            }
+        }
+    };
+
+    /**
+     * Constructs the autosave of a file
+     * @param file the file that holds the save
+     */
+    public Autosave(File file)
+    {
+        this.file = file.toPath();
+        this.temporaryFile = new File(file.getPath() + ".tmp").toPath();
+        writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "Autosave");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+    /**
+     * @return the file of the autosave in the home directory of the user
+     */
+    public static File defaultFile()
+    {
+        return new File(new File(System.getProperty("user.home"), ".solitaire"), "autosave.bin");
+    }
+    /**
+     * Saves a game in the background
+     * @param saved the game, as returned by SavedGame.encode
+     */
+    public void save(byte[] saved)
+    {
+        if (pending.getAndSet(saved) == null)
+        {
+            writer.execute(writePending);
+        }
+    }
+    /**
+     * Saves a game and waits until it is written, for example when the window is closed
+     * @param saved the game, as returned by SavedGame.encode
+     */
+    public void saveNow(byte[] saved)
+    {
+        pending.set(saved);
+        waitFor(writePending);
+    }
+    /**
+     * Deletes the save, for example when the game is won, once the saves still pending are written
+     */
+    public void delete()
+    {
+        pending.set(null);
+        writer.execute(new Runnable() {
+            public void run() {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    System.out.println("Error deleting autosave.");
+                }
+            }
+        });
+    }
+    /**
+     * Loads the saved game, if there is one
+     * @return the saved game, or null if there is none or it can not be read
+     */
+    public SavedGame load()
+    {
+        waitFor(writePending);
+        if (!Files.exists(file))
+        {
+            return null;
+        }
+        try
+        {
+            return SavedGame.decode(Files.readAllBytes(file));
+        }
+        catch (IOException e)
+        {
+            System.out.println("Error reading autosave: " + e.getMessage());
+            return null;
+        }
+    }
+    /**
+     * Writes a save to the file, replacing the previous one in one step
+     * @param saved the game
+     */
+    private void write(byte[] saved)
+    {
+        try
+        {
+            Files.createDirectories(file.getParent());
+            Files.write(temporaryFile, saved);
+            try
+            {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        catch (IOException e)
+        {
+            System.out.println("Error writing autosave.");
+        }
+    }
+    /**
+     * Runs a task on the writer thread and waits until it is done
+     * @param task the task
+     */
+    private void waitFor(Runnable task)
+    {
+        try
+        {
+            writer.submit(task).get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e)
+        {
+            throw new IllegalStateException("Autosave failed", e.getCause());
+        }
+    }
+}
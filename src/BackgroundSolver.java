@@ -0,0 +1,210 @@
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+public final class BackgroundSolver
+{
+    /**
+     * BackgroundSolver.java
+     * Solves the game of a GamePanel from its current position without blocking the Event Dispatch
+     * Thread, and plays the solution back one move at a time. The search runs on a copy of the
+     * state on a background thread; the Event Dispatch Thread only takes the snapshot, polls the
+     * progress and receives the result through invokeLater, and every playback step is a single
+     * move, so it is never held for more than a frame.
+     *
+     * A result is only played if the position is still the one that was solved, and the playback
+     * stops as soon as the player changes the position. Every panel shares the same worker thread
+     * and solver (the transposition table takes a few megabytes), so solving a new position
+     * cancels the search of the previous one.
+     */
+    /**
+     * Time between two moves of the playback
+     */
+    public static final int PLAYBACK_DELAY_MILLIS = 300;
+    /**
+     * Time between two updates of the progress shown while searching
+     */
+    public static final int PROGRESS_DELAY_MILLIS = 100;
+
+    private static final ExecutorService WORKER = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "Solver");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+    /**
+     * Used only by the worker thread
+     */
+    private static final KlondikeSolver SOLVER = new KlondikeSolver();
+    /**
+     * The cancel flag of the search in progress, shared by the panels like the worker
+     */
+    private static AtomicBoolean running;
+
+    private final GamePanel panel;
+    /**
+     * The cancel flag of the search started by this panel, or null if it is not searching
+     */
+    private AtomicBoolean searching;
+    /**
+     * The solution being played back, and the number of its moves played so far
+     */
+    private int[] solution;
+    private int played;
+    /**
+     * The hash of the position the next move of the playback expects
+     */
+    private long expectedHash;
+    private final Timer progressTimer;
+    private final Timer playbackTimer;
+
+    /**
+     * Constructs the solver of a panel
+     * @param panel the panel whose game is solved and played
+     */
+    public BackgroundSolver(GamePanel panel)
+    {
+        this.panel = panel;
+        progressTimer = new Timer(PROGRESS_DELAY_MILLIS, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                showProgress();
+            }
+        });
+        playbackTimer = new Timer(PLAYBACK_DELAY_MILLIS, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                playNextMove();
+            }
+        });
+    }
+    /**
+     * Starts solving the game from its current position, cancelling any search or playback in progress
+     */
+    public void solve()
+    {
+        cancel();
+        final KlondikeState snapshot = new KlondikeState(panel.getState());
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        synchronized (BackgroundSolver.class)
+        {
+            if (running != null)
+            {
+                running.set(true);
+            }
+            running = cancelled;
+        }
+        searching = cancelled;
+        WORKER.execute(new Runnable() {
+            public void run() {
+                final KlondikeSolver.Result result = SOLVER.solve(snapshot, cancelled);
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        finished(cancelled, snapshot.getHash(), result);
+                    }
+                });
+            }
+        });
+        panel.setStatus("Se cauta o solutie... (Esc pentru anulare)");
+        progressTimer.start();
+    }
+    /**
+     * Stops the search or the playback in progress, if any
+     */
+    public void cancel()
+    {
+        if (searching != null)
+        {
+            searching.set(true);
+            searching = null;
+            progressTimer.stop();
+            panel.setStatus(null);
+        }
+        if (solution != null)
+        {
+            stopPlayback(null);
+        }
+    }
+    /**
+     * @return whether a search or a playback is in progress
+     */
+    public boolean isBusy()
+    {
+        return searching != null || solution != null;
+    }
+    /**
+     * Shows how many positions the search has gone through
+     */
+    private void showProgress()
+    {
+        panel.setStatus("Se cauta o solutie: " + SOLVER.getProgress() / 1000 + " mii de pozitii... (Esc pentru anulare)");
+    }
+    /**
+     * Receives the result of a search on the Event Dispatch Thread
+     * @param cancelled the cancel flag of the search
+     * @param hash the hash of the position solved
+     * @param result the result
+     */
+    private void finished(AtomicBoolean cancelled, long hash, KlondikeSolver.Result result)
+    {
+        if (cancelled != searching)
+        {
+            return;
+        }
+        searching = null;
+        progressTimer.stop();
+        if (result.getStatus() == KlondikeSolver.Status.CANCELLED)
+        {
+            panel.setStatus(null);
+            return;
+        }
+        if (!result.isSolved())
+        {
+            // a search stopped by its budget, its timeout or its depth limit only did not find a win
+            panel.setStatus(result.isLost() ? "Nu exista nicio solutie din aceasta pozitie." : "Nu s-a gasit nicio solutie.");
+            return;
+        }
+        if (panel.getState().getHash() != hash)
+        {
+            panel.setStatus("Pozitia s-a schimbat, apasa S din nou.");
+            return;
+        }
+        solution = result.getSolution();
+        played = 0;
+        expectedHash = hash;
+        panel.setStatus("Solutie gasita: " + solution.length + " mutari. (Esc pentru oprire)");
+        playbackTimer.start();
+    }
+    /**
+     * Plays the next move of the solution, or stops if the player changed the position
+     */
+    private void playNextMove()
+    {
+        if (panel.getState().getHash() != expectedHash)
+        {
+            stopPlayback(null);
+            return;
+        }
+        panel.playMove(solution[played++]);
+        expectedHash = panel.getState().getHash();
+        if (played == solution.length)
+        {
+            stopPlayback(panel.checkForWin() ? "Felicitari!! Jocul a fost rezolvat." : null);
+        }
+    }
+    /**
+     * Ends the playback
+     * @param status the text to show, or null
+     */
+    private void stopPlayback(String status)
+    {
+        playbackTimer.stop();
+        solution = null;
+        panel.setStatus(status);
+    }
+}
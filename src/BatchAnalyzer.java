@@ -0,0 +1,198 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public final class BatchAnalyzer
+{
+    /**
+     * BatchAnalyzer.java
+     * Deals and solves every seed (deal number, see KlondikeDeal.fromNumber) of a range on all the
+     * cores of the machine and streams one record per seed to a binary file, to measure how hard
+     * the deals of a level are.
+     *
+     * The seeds are split in chunks; every worker thread keeps its own KlondikeSolver so the workers
+     * share nothing, and the chunks are written in the order they complete. The file starts with the
+     * magic "KLB1" and the level (as written by DataOutputStream.writeUTF), followed by records of
+     * RECORD_SIZE bytes: the seed (long), the solver status (byte, the ordinal of
+     * KlondikeSolver.Status), the solution length (short) and the number of nodes searched (int).
+     */
+    private BatchAnalyzer()
+    {
+    }
+
+    public static final int MAGIC = 0x4B4C4231;
+    public static final int RECORD_SIZE = 8 + 1 + 2 + 4;
+    /**
+     * Number of seeds solved by one task
+     */
+    private static final int CHUNK_SIZE = 256;
+    /**
+     * Number of chunks in flight per worker, which bounds the memory used by pending results
+     */
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    /**
+     * Runs a batch from the command line
+     * @param args first seed, last seed (inclusive), level, output file and optionally the node
+     *             budget and the timeout in milliseconds of every deal
+     */
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        if (args.length < 4 || !args[2].equals("level1") && !args[2].equals("level2"))
+        {
+            printUsage();
+            return;
+        }
+        long first, last, nodeBudget, timeoutMillis;
+        try
+        {
+            first = KlondikeDeal.parseDealNumber(args[0]);
+            last = KlondikeDeal.parseDealNumber(args[1]);
+            nodeBudget = args.length > 4 ? Long.parseLong(args[4]) : KlondikeSolver.DEFAULT_NODE_BUDGET;
+            timeoutMillis = args.length > 5 ? Long.parseLong(args[5]) : KlondikeSolver.DEFAULT_TIMEOUT_MILLIS;
+        }
+        catch (NumberFormatException e)
+        {
+            printUsage();
+            return;
+        }
+        String level = args[2];
+        run(first, last, level, args[3], nodeBudget, timeoutMillis, Runtime.getRuntime().availableProcessors());
+    }
+    /**
+     * Solves every seed of a range and writes the records to a file
+     * @param first the first seed, an unsigned deal number
+     * @param last the last seed, inclusive, not below first as an unsigned number
+     * @param level the level used to shuffle the deals
+     * @param output the path of the output file
+     * @param nodeBudget the node budget of every deal
+     * @param timeoutMillis the timeout of every deal
+     * @param threads the number of worker threads
+     * @return the number of deals of every KlondikeSolver.Status, indexed by ordinal
+     */
+    public static long[] run(long first, long last, final String level, String output,
+                             final long nodeBudget, final long timeoutMillis, int threads)
+            throws IOException, InterruptedException
+    {
+        if (Long.compareUnsigned(last, first) < 0)
+        {
+            throw new IllegalArgumentException("The last seed is before the first one");
+        }
+        final ThreadLocal<KlondikeSolver> solvers = new ThreadLocal<KlondikeSolver>() {
+            protected KlondikeSolver initialValue() {
+                return new KlondikeSolver(nodeBudget, timeoutMillis, KlondikeSolver.DEFAULT_TABLE_BITS);
+            }
+        };
+        long[] totals = new long[KlondikeSolver.Status.values().length];
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CompletionService<ByteBuffer> results = new ExecutorCompletionService<ByteBuffer>(pool);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output), 1 << 16)))
+        {
+            out.writeInt(MAGIC);
+            out.writeUTF(level);
+            long next = first;
+            boolean submittedAll = false;
+            int pending = 0;
+            int maxPending = threads * CHUNKS_PER_WORKER;
+            while (!submittedAll || pending > 0)
+            {
+                while (!submittedAll && pending < maxPending)
+                {
+                    final long from = next;
+                    final long to = Long.compareUnsigned(last - from, CHUNK_SIZE) < 0 ? last : from + CHUNK_SIZE - 1;
+                    results.submit(new Callable<ByteBuffer>() {
+                        public ByteBuffer call() {
+                            return solveChunk(solvers.get(), level, from, to);
+                        }
+                    });
+                    pending++;
+                    submittedAll = to == last;
+                    next = to + 1;
+                }
+                ByteBuffer chunk = results.take().get();
+                pending--;
+                out.write(chunk.array(), 0, chunk.limit());
+                for (int i = 0; i < chunk.limit(); i += RECORD_SIZE)
+                {
+                    totals[chunk.get(i + 8)]++;
+                }
+            }
+        }
+        catch (ExecutionException e)
+        {
+            throw new IllegalStateException("A batch worker failed", e.getCause());
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+        report(totals, System.nanoTime() - start);
+        return totals;
+    }
+    /**
+     * Deals and solves the seeds of a chunk
+     * @param solver the solver of the worker thread
+     * @param level the level used to shuffle the deals
+     * @param from the first seed of the chunk
+     * @param to the last seed of the chunk, inclusive
+     * @return the records of the chunk
+     */
+    private static ByteBuffer solveChunk(KlondikeSolver solver, String level, long from, long to)
+    {
+        ByteBuffer records = ByteBuffer.allocate((int) (to - from + 1) * RECORD_SIZE);
+        for (long seed = from; ; seed++)
+        {
+            KlondikeSolver.Result result = solver.solve(KlondikeDeal.fromNumber(level, seed));
+            records.putLong(seed);
+            records.put((byte) result.getStatus().ordinal());
+            records.putShort((short) result.getSolutionLength());
+            records.putInt((int) Math.min(Integer.MAX_VALUE, result.getNodes()));
+            if (seed == to)
+            {
+                break;
+            }
+        }
+        records.flip();
+        return records;
+    }
+    /**
+     * Prints the summary of a batch: the deals of every status, then how many are known to be won
+     * or lost
+     * @param totals the number of deals of every status
+     * @param elapsedNanos the duration of the batch
+     */
+    private static void report(long[] totals, long elapsedNanos)
+    {
+        long deals = 0;
+        for (long total : totals)
+        {
+            deals += total;
+        }
+        KlondikeSolver.Status[] statuses = KlondikeSolver.Status.values();
+        for (int i = 0; i < statuses.length; i++)
+        {
+            System.out.println(String.format("%-12s %10d  %5.1f%%", statuses[i], totals[i], deals == 0 ? 0 : totals[i] * 100.0 / deals));
+        }
+        // only SOLVED and UNSOLVABLE are proofs, a deal stopped by a limit may be won or lost
+        long won = totals[KlondikeSolver.Status.SOLVED.ordinal()];
+        long lost = totals[KlondikeSolver.Status.UNSOLVABLE.ordinal()];
+        System.out.println(String.format("%d won, %d proved lost, %d undecided", won, lost, deals - won - lost));
+        System.out.println(String.format("%d deals in %.1f s (%.0f deals/s)", deals, elapsedNanos / 1e9, deals * 1e9 / elapsedNanos));
+    }
+    /**
+     * Prints the command line arguments a batch takes
+     */
+    private static void printUsage()
+    {
+        System.out.println("Usage: --batch <first seed> <last seed> <level1|level2> <output file> [node budget] [timeout ms]");
+    }
+}
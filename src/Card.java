@@ -1,29 +1,28 @@
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
-import javax.imageio.ImageIO;
 
 public class Card {
 
     /**
      * Card.java
      * A card has a suit (spade, heart, diamond, club) and a face (ace, 2, 3, ..., 10, Jack, Queen, King).
-     * This class provides methods for drawing and constructing a card.
+     * This class provides methods for drawing and constructing a card. The identity of the card
+     * is its CardCode, the Card itself is only the view that knows where and how to draw it.
      */
-    private String suit;
-    private String face;
-
-    private BufferedImage backImg;
-    private BufferedImage faceImg;
-
-    private Color color;
+    private final byte code;
 
     private int cornerX, cornerY;
     private int rightX;
     private int bottomY;
+    /**
+     * The size the card is drawn at, which follows the TableLayout of its panel
+     */
+    private int width = WIDTH, height = HEIGHT;
 
+    /**
+     * The size of the card images, and of a card on the table at its reference size
+     */
     public static final int HEIGHT = 97, WIDTH = 73;
 
     /**
@@ -36,6 +35,15 @@ public class Card {
     public static final String[] FACES = {"A", "2", "3", "4", "5", "6", "7", "8", "9", "10", "J", "Q", "K"};
 
     public boolean faceDown;
+    /**
+     * Whether the card is moving to its place, drawn by the CardAnimator instead of its pile
+     */
+    private boolean inFlight;
+    /**
+     * The symbol of every suit, in the same order as SUITS, drawn on a card until its image is ready
+     */
+    private static final String SUIT_SYMBOLS = "\u2660\u2665\u2666\u2663";
+    private static final Color PLACEHOLDER_BACK = new Color(200, 120, 70);
 
     /**
      * No-arg constructor that initializes the card to the Ace of Spades
@@ -61,339 +69,92 @@ public class Card {
      */
     public Card(String f, String s, int x, int y)
     {
-        setFace(f);
-        setSuit(s);
-        setLocation(x, y);
-        initFaceImage();
-        initBackImage();
-        faceDown = true;
-    }
-    /**
-     * Draws the card to a graphics context
-     * @param graphic the graphics context to draw the card on
-     */
-    public void draw(Graphics graphic)
-    {
-        if (!faceDown)
-        {
-            graphic.drawImage(faceImg, cornerX, cornerY, null);
-        }
-        else
-            {
-                graphic.drawImage(backImg, cornerX, cornerY, null);
-            }
-    }
-    /**
-     * Initializes the face image of the card depending on what suit and face the card is
-     */
-    private void initFaceImage() {
-        try {
-            switch (suit) {
-                case "S":
-                    switch(face){
-                        case "A":
-                            faceImg=ImageIO.read(new File("images/Frunza/as.gif"));
-                            color=Color.black;
-                            break;
-                        case "2":
-                            faceImg=ImageIO.read(new File("images/Frunza/2s.gif"));
-                            color=Color.black;
-                            break;
-                        case "3":
-                            faceImg=ImageIO.read(new File("images/Frunza/3s.gif"));
-                            color=Color.black;
-                            break;
-                        case "4":
-                            faceImg=ImageIO.read(new File("images/Frunza/4s.gif"));
-                            color=Color.black;
-                            break;
-                        case "5":
-                            faceImg=ImageIO.read(new File("images/Frunza/5s.gif"));
-                            color=Color.black;
-                            break;
-                        case "6":
-                            faceImg=ImageIO.read(new File("images/Frunza/6s.gif"));
-                            color=Color.black;
-                            break;
-                        case "7":
-                            faceImg=ImageIO.read(new File("images/Frunza/7s.gif"));
-                            color=Color.black;
-                            break;
-                        case "8":
-                            faceImg=ImageIO.read(new File("images/Frunza/8s.gif"));
-                            color=Color.black;
-                            break;
-                        case "9":
-                            faceImg=ImageIO.read(new File("images/Frunza/9s.gif"));
-                            color=Color.black;
-                            break;
-                        case "10":
-                            faceImg=ImageIO.read(new File("images/Frunza/ts.gif"));
-                            color=Color.black;
-                            break;
-                        case "J":
-                            faceImg=ImageIO.read(new File("images/Frunza/js.gif"));
-                            color=Color.black;
-                            break;
-                        case "Q":
-                            faceImg=ImageIO.read(new File("images/Frunza/qs.gif"));
-                            color=Color.black;
-                            break;
-                        case "K":
-                            faceImg=ImageIO.read(new File("images/Frunza/ks.gif"));
-                            color=Color.black;
-                            break;
-                    }
-                    break;
-                case "H":
-                    switch(face){
-                        case "A":
-                            faceImg=ImageIO.read(new File("images/Inima/ah.gif"));
-                            color=Color.red;
-                            break;
-                        case "2":
-                            faceImg=ImageIO.read(new File("images/Inima/2h.gif"));
-                            color=Color.red;
-                            break;
-                        case "3":
-                            faceImg=ImageIO.read(new File("images/Inima/3h.gif"));
-                            color=Color.red;
-                            break;
-                        case "4":
-                            faceImg=ImageIO.read(new File("images/Inima/4h.gif"));
-                            color=Color.red;
-                            break;
-                        case "5":
-                            faceImg=ImageIO.read(new File("images/Inima/5h.gif"));
-                            color=Color.red;
-                            break;
-                        case "6":
-                            faceImg=ImageIO.read(new File("images/Inima/6h.gif"));
-                            color=Color.red;
-                            break;
-                        case "7":
-                            faceImg=ImageIO.read(new File("images/Inima/7h.gif"));
-                            color=Color.red;
-                            break;
-                        case "8":
-                            faceImg=ImageIO.read(new File("images/Inima/8h.gif"));
-                            color=Color.red;
-                            break;
-                        case "9":
-                            faceImg=ImageIO.read(new File("images/Inima/9h.gif"));
-                            color=Color.red;
-                            break;
-                        case "10":
-                            faceImg=ImageIO.read(new File("images/Inima/th.gif"));
-                            color=Color.red;
-                            break;
-                        case "J":
-                            faceImg=ImageIO.read(new File("images/Inima/jh.gif"));
-                            color=Color.red;
-                            break;
-                        case "Q":
-                            faceImg=ImageIO.read(new File("images/Inima/qh.gif"));
-                            color=Color.red;
-                            break;
-                        case "K":
-                            faceImg=ImageIO.read(new File("images/Inima/kh.gif"));
-                            color=Color.red;
-                            break;
-                    }
-                    break;
-                case "D":
-                    switch(face){
-                        case "A":
-                            faceImg=ImageIO.read(new File("images/Romb/ad.gif"));
-                            color=Color.red;
-                            break;
-                        case "2":
-                            faceImg=ImageIO.read(new File("images/Romb/2d.gif"));
-                            color=Color.red;
-                            break;
-                        case "3":
-                            faceImg=ImageIO.read(new File("images/Romb/3d.gif"));
-                            color=Color.red;
-                            break;
-                        case "4":
-                            faceImg=ImageIO.read(new File("images/Romb/4d.gif"));
-                            color=Color.red;
-                            break;
-                        case "5":
-                            faceImg=ImageIO.read(new File("images/Romb/5d.gif"));
-                            color=Color.red;
-                            break;
-                        case "6":
-                            faceImg=ImageIO.read(new File("images/Romb/6d.gif"));
-                            color=Color.red;
-                            break;
-                        case "7":
-                            faceImg=ImageIO.read(new File("images/Romb/7d.gif"));
-                            color=Color.red;
-                            break;
-                        case "8":
-                            faceImg=ImageIO.read(new File("images/Romb/8d.gif"));
-                            color=Color.red;
-                            break;
-                        case "9":
-                            faceImg=ImageIO.read(new File("images/Romb/9d.gif"));
-                            color=Color.red;
-                            break;
-                        case "10":
-                            faceImg=ImageIO.read(new File("images/Romb/td.gif"));
-                            color=Color.red;
-                            break;
-                        case "J":
-                            faceImg=ImageIO.read(new File("images/Romb/jd.gif"));
-                            color=Color.red;
-                            break;
-                        case "Q":
-                            faceImg=ImageIO.read(new File("images/Romb/qd.gif"));
-                            color=Color.red;
-                            break;
-                        case "K":
-                            faceImg=ImageIO.read(new File("images/Romb/kd.gif"));
-                            color=Color.red;
-                            break;
-                    }
-                    break;
-                case "C":
-                    switch(face){
-                        case "A":
-                            faceImg=ImageIO.read(new File("images/Trefla/ac.gif"));
-                            color=Color.black;
-                            break;
-                        case "2":
-                            faceImg=ImageIO.read(new File("images/Trefla/2c.gif"));
-                            color=Color.black;
-                            break;
-                        case "3":
-                            faceImg=ImageIO.read(new File("images/Trefla/3c.gif"));
-                            color=Color.black;
-                            break;
-                        case "4":
-                            faceImg=ImageIO.read(new File("images/Trefla/4c.gif"));
-                            color=Color.black;
-                            break;
-                        case "5":
-                            faceImg=ImageIO.read(new File("images/Trefla/5c.gif"));
-                            color=Color.black;
-                            break;
-                        case "6":
-                            faceImg=ImageIO.read(new File("images/Trefla/6c.gif"));
-                            color=Color.black;
-                            break;
-                        case "7":
-                            faceImg=ImageIO.read(new File("images/Trefla/7c.gif"));
-                            color=Color.black;
-                            break;
-                        case "8":
-                            faceImg=ImageIO.read(new File("images/Trefla/8c.gif"));
-                            color=Color.black;
-                            break;
-                        case "9":
-                            faceImg=ImageIO.read(new File("images/Trefla/9c.gif"));
-                            color=Color.black;
-                            break;
-                        case "10":
-                            faceImg=ImageIO.read(new File("images/Trefla/tc.gif"));
-                            color=Color.black;
-                            break;
-                        case "J":
-                            faceImg=ImageIO.read(new File("images/Trefla/jc.gif"));
-                            color=Color.black;
-                            break;
-                        case "Q":
-                            faceImg=ImageIO.read(new File("images/Trefla/qc.gif"));
-                            color=Color.black;
-                            break;
-                        case "K":
-                            faceImg=ImageIO.read(new File("images/Trefla/kc.gif"));
-                            color=Color.black;
-                            break;
-                    }
-                    break;
-                default:
-            }
-        } catch (IOException ioException) {
-            System.out.println("Error reading image.");
-        }
+        this(CardCode.encode(getSuitIndex(s), getFaceIndex(f)), x, y);
     }
     /**
-     * Initializes the back image of the card
+     * Constructor for the view of a card code at (0, 0)
+     * @param code the card code
      */
-    private void initBackImage()
-    {
-        try
-        {
-            backImg=ImageIO.read(new File("images/b.gif"));
-        }
-        catch(IOException ioException)
-        {
-            System.out.println("Error reading image.");
-        }
+    public Card(byte code) {
+        this(code, 0, 0);
     }
     /**
-     * Sets the suit to s if it's valid
-     * @param s the new suit
+     * Constructor for the view of a card code at (x, y)
+     * @param code the card code
+     * @param x the top-left x coordinate of the card
+     * @param y the top-left y coordinate of the card
      */
-    private void setSuit(String s)
+    public Card(byte code, int x, int y)
     {
-        if (isValidSuit(s))
-            suit = s;
+        this.code = code;
+        setLocation(x, y);
+        faceDown = true;
     }
     /**
-     * Sets the face to s if it's valid
-     * @param s the new face
+     * Draws the card to a graphics context at its location, unless it is in flight
+     * @param graphic the graphics context to draw the card on
      */
-    private void setFace(String s)
+    public void draw(Graphics graphic)
     {
-        if (isValidFace(s))
-            face = s;
+        if (!inFlight)
+        {
+            drawAt(graphic, cornerX, cornerY);
+        }
     }
     /**
-     * Determines if the passed in suit is valid
-     * @param s the suit
-     * @return whether s is valid
+     * Draws the card somewhere else than its location, without moving it
+     * @param graphic the graphics context to draw the card on
+     * @param x the top-left x coordinate to draw the card at
+     * @param y the top-left y coordinate to draw the card at
      */
-    private boolean isValidSuit(String s)
+    public void drawAt(Graphics graphic, int x, int y)
     {
-        for (int i = 0; i < SUITS.length; i++)
+        BufferedImage image = faceDown ? CardImages.getBackImage() : CardImages.getFaceImage(CardCode.ordinal(code));
+        if (image != null)
         {
-            if (s.equals(SUITS[i]))
+            ScaledImageCache.draw(graphic, image, x, y, width, height);
+        }
+        else
             {
-                return true;
+                drawPlaceholder(graphic, x, y);
             }
-        }
-        return false;
     }
     /**
-     * Determines if the passed in face is valid
-     * @param s the face
-     * @return whether s is valid
+     * Draws the card without its image, while the images are decoded: a blank back, or the face
+     * and the suit of the card in its corner
+     * @param graphic the graphics context to draw the card on
+     * @param x the top-left x coordinate to draw the card at
+     * @param y the top-left y coordinate to draw the card at
      */
-    private boolean isValidFace(String s)
+    private void drawPlaceholder(Graphics graphic, int x, int y)
     {
-        for (int i = 0; i < FACES.length; i++)
+        graphic.setColor(faceDown ? PLACEHOLDER_BACK : Color.white);
+        graphic.fillRoundRect(x, y, width - 1, height - 1, 8, 8);
+        graphic.setColor(Color.gray);
+        graphic.drawRoundRect(x, y, width - 1, height - 1, 8, 8);
+        if (!faceDown)
         {
-            if (s.equals(FACES[i]))
-            {
-                return true;
-            }
+            graphic.setColor(CardCode.isRed(code) ? Color.red : Color.black);
+            graphic.drawString(getFace() + SUIT_SYMBOLS.charAt(CardCode.suit(code)), x + 5, y + 15);
         }
-        return false;
     }
     /**
      * @return the card suit
      */
     public String getSuit() {
-        return suit;
+        return SUITS[CardCode.suit(code)];
     }
     /**
      * @return the card face
      */
     public String getFace() {
-        return face;
+        return FACES[CardCode.face(code)];
+    }
+    /**
+     * @return the primitive code of the card
+     */
+    public byte getCode() {
+        return code;
     }
     /**
      * Returns the index in the faces array of the passed in the string
@@ -457,25 +218,60 @@ public class Card {
         cornerY = y;
         assignVertices();
     }
+    /**
+     * Sets the size the card is drawn at
+     * @param w the width of the card
+     * @param h the height of the card
+     */
+    public void setSize(int w, int h)
+    {
+        width = w;
+        height = h;
+        assignVertices();
+    }
+    /**
+     * @return the width the card is drawn at
+     */
+    public int getWidth() {
+        return width;
+    }
+    /**
+     * @return the height the card is drawn at
+     */
+    public int getHeight() {
+        return height;
+    }
+    /**
+     * @return whether the card is moving to its place, so its pile does not draw it
+     */
+    public boolean isInFlight() {
+        return inFlight;
+    }
+    /**
+     * @param inFlight whether the card is moving to its place, drawn by the CardAnimator
+     */
+    public void setInFlight(boolean inFlight) {
+        this.inFlight = inFlight;
+    }
     /**
      * @return the string: "<face> of <suit>"
      */
     public String toString() {
-        return face + " of " + suit;
+        return CardCode.toString(code);
     }
     /**
      * Assigns the rightX and bottomY vertices based on the top left corner location
      */
     private void assignVertices()
     {
-        rightX = cornerX + WIDTH;
-        bottomY   = cornerY + HEIGHT;
+        rightX = cornerX + width;
+        bottomY   = cornerY + height;
     }
     /**
      * @return the color of the card
      */
     public Color getColor() {
-        return color;
+        return CardCode.isRed(code) ? Color.red : Color.black;
     }
 
 }
@@ -0,0 +1,323 @@
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import javax.swing.Timer;
+
+public final class CardAnimator
+{
+    /**
+     * CardAnimator.java
+     * Moves cards smoothly to where the game state puts them instead of making them jump there. A
+     * card flies from where it was seen last to its place on its pile: back to its pile after a
+     * rejected drop, into the pile it was dropped on, from the stock to the waste, and for every
+     * move played by undo, redo or the solver. The panel calls capture before it syncs the piles
+     * and animateChanges after, and every card whose place changed is animated, so no code that
+     * plays moves has to know about the animations.
+     *
+     * Every card in flight is moved by the same frame clock, at a position that follows from the
+     * time since it started, so a slow frame makes the card skip ahead rather than slow down. A
+     * frame repaints the union of the places the cards left and reached, with one repaint, and
+     * needs no allocation, so many cards in flight cost about as much as one. A card in flight is
+     * left out of the cached table image (see Card.isInFlight) and drawn over it until it lands.
+     *
+     * The places of the cards never change during an animation, only where they are drawn, so the
+     * mouse and the rules see every card where it lands.
+     */
+    /**
+     * Time between two frames
+     */
+    public static final int FRAME_MILLIS = 15;
+    /**
+     * How long a card takes to reach its place
+     */
+    public static final int MOVE_MILLIS = 180;
+    /**
+     * How long a card takes to reach its pile while dealing, and the time between two dealt cards
+     */
+    public static final int DEAL_MILLIS = 220;
+    public static final int DEAL_DELAY_MILLIS = 30;
+
+    private final GamePanel panel;
+    /**
+     * The view of every card, indexed by CardCode.ordinal
+     */
+    private final Card[] cards;
+    /**
+     * The ordinals of the cards in flight, in the order they are drawn
+     */
+    private final int[] flying = new int[CardCode.COUNT];
+    private int flyingCount;
+    /**
+     * Where every card in flight started, the place it flies to, when it started, for how long,
+     * and where it was last drawn; indexed by ordinal
+     */
+    private final int[] fromX = new int[CardCode.COUNT];
+    private final int[] fromY = new int[CardCode.COUNT];
+    private final int[] toX = new int[CardCode.COUNT];
+    private final int[] toY = new int[CardCode.COUNT];
+    private final long[] startNanos = new long[CardCode.COUNT];
+    private final long[] durationNanos = new long[CardCode.COUNT];
+    private final int[] drawnX = new int[CardCode.COUNT];
+    private final int[] drawnY = new int[CardCode.COUNT];
+    /**
+     * Where every card was seen by the last capture, indexed by ordinal
+     */
+    private final int[] seenX = new int[CardCode.COUNT];
+    private final int[] seenY = new int[CardCode.COUNT];
+    /**
+     * The time of the last frame; a card dealt later is not drawn yet
+     */
+    private long frameNanos;
+    /**
+     * Number of times a card took off or landed, added to the version of the cached table image
+     */
+    private int modCount;
+    /**
+     * The area repainted by a frame, reused by every frame
+     */
+    private final Rectangle dirty = new Rectangle();
+    private final Timer clock;
+
+    /**
+     * Constructs the animator of a panel
+     * @param panel the panel the cards are drawn on
+     * @param cards the view of every card, indexed by CardCode.ordinal; read again on every call
+     */
+    public CardAnimator(GamePanel panel, Card[] cards)
+    {
+        this.panel = panel;
+        this.cards = cards;
+        clock = new Timer(FRAME_MILLIS, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                frame(System.nanoTime());
+            }
+        });
+    }
+    /**
+     * Records where every card is seen now, where it is drawn in flight or dragged, before the
+     * piles are synced from the game state
+     */
+    public void capture()
+    {
+        for (int i = 0; i < cards.length; i++)
+        {
+            Card card = cards[i];
+            seenX[i] = card.isInFlight() ? drawnX[i] : card.getcornerX();
+            seenY[i] = card.isInFlight() ? drawnY[i] : card.getcornerY();
+        }
+        DragSlice drag = panel.getDrag();
+        if (drag.isActive())
+        {
+            Pile pile = drag.getPile();
+            for (int i = pile.getSize() - drag.getSize(); i < pile.getSize(); i++)
+            {
+                int ordinal = CardCode.ordinal(pile.getCardAt(i).getCode());
+                seenX[ordinal] += drag.getOffsetX();
+                seenY[ordinal] += drag.getOffsetY();
+            }
+        }
+    }
+    /**
+     * Animates every card whose place differs from where the last capture saw it, pile by pile
+     * from the bottom card up, so cards moved together are drawn in the order of their pile
+     * @return whether a card was animated
+     */
+    public boolean animateChanges()
+    {
+        long now = System.nanoTime();
+        frameNanos = now;
+        int count = flyingCount;
+        for (Pile pile : panel.getMainPiles())
+        {
+            animateChanges(pile, now);
+        }
+        for (Pile pile : panel.getSuitPiles())
+        {
+            animateChanges(pile, now);
+        }
+        animateChanges(panel.getDeckPile(), now);
+        Deck deck = panel.getDeck();
+        for (int i = 0; i < deck.getSize(); i++)
+        {
+            animateChange(deck.getCardAt(i), now);
+        }
+        return flyingCount != count;
+    }
+    /**
+     * Animates the cards of a pile whose place changed
+     * @param pile the pile
+     * @param now the value of System.nanoTime
+     */
+    private void animateChanges(Pile pile, long now)
+    {
+        for (int i = 0; i < pile.getSize(); i++)
+        {
+            animateChange(pile.getCardAt(i), now);
+        }
+    }
+    /**
+     * Animates a card if its place changed since the last capture, and it is not already flying there
+     * @param card the card
+     * @param now the value of System.nanoTime
+     */
+    private void animateChange(Card card, long now)
+    {
+        int ordinal = CardCode.ordinal(card.getCode());
+        if (card.isInFlight() && toX[ordinal] == card.getcornerX() && toY[ordinal] == card.getcornerY())
+        {
+            return;
+        }
+        if (seenX[ordinal] != card.getcornerX() || seenY[ordinal] != card.getcornerY())
+        {
+            fly(ordinal, seenX[ordinal], seenY[ordinal], now, MOVE_MILLIS);
+        }
+    }
+    /**
+     * Deals the cards of the main piles from the deck, row by row like a player deals them
+     */
+    public void deal()
+    {
+        long now = System.nanoTime();
+        frameNanos = now;
+        Pile[] mainPiles = panel.getMainPiles();
+        Deck deck = panel.getDeck();
+        int dealt = 0;
+        for (int row = 0; row < KlondikeState.MAIN_PILE_CAPACITY; row++)
+        {
+            for (int i = 0; i < mainPiles.length; i++)
+            {
+                Card card = mainPiles[i].getCardAt(row);
+                if (card != null)
+                {
+                    fly(CardCode.ordinal(card.getCode()), deck.getX(), deck.getY(),
+                            now + dealt++ * DEAL_DELAY_MILLIS * 1000000L, DEAL_MILLIS);
+                }
+            }
+        }
+        panel.repaint();
+    }
+    /**
+     * Starts moving a card, from where it is drawn now if it is already in flight
+     * @param ordinal the ordinal of the card
+     * @param x the x location to start from
+     * @param y the y location to start from
+     * @param start when the card starts moving, as a value of System.nanoTime
+     * @param millis how long it takes to reach its place
+     */
+    private void fly(int ordinal, int x, int y, long start, int millis)
+    {
+        Card card = cards[ordinal];
+        if (!card.isInFlight())
+        {
+            card.setInFlight(true);
+            modCount++;
+            flying[flyingCount++] = ordinal;
+        }
+        fromX[ordinal] = x;
+        fromY[ordinal] = y;
+        drawnX[ordinal] = x;
+        drawnY[ordinal] = y;
+        toX[ordinal] = card.getcornerX();
+        toY[ordinal] = card.getcornerY();
+        startNanos[ordinal] = start;
+        durationNanos[ordinal] = millis * 1000000L;
+        if (!clock.isRunning())
+        {
+            clock.start();
+        }
+    }
+    /**
+     * Moves every card in flight to where it is at a time, lands the ones that arrived and
+     * repaints where they were and where they are
+     * @param now the time, as a value of System.nanoTime
+     */
+    void frame(long now)
+    {
+        frameNanos = now;
+        dirty.setBounds(0, 0, -1, -1);
+        int kept = 0;
+        for (int i = 0; i < flyingCount; i++)
+        {
+            int ordinal = flying[i];
+            Card card = cards[ordinal];
+            addBounds(card, drawnX[ordinal], drawnY[ordinal]);
+            long elapsed = now - startNanos[ordinal];
+            if (elapsed >= durationNanos[ordinal])
+            {
+                card.setInFlight(false);
+                modCount++;
+                addBounds(card, card.getcornerX(), card.getcornerY());
+                continue;
+            }
+            double progress = elapsed <= 0 ? 0 : (double) elapsed / durationNanos[ordinal];
+            // fast at first and slowing down as it lands
+            double eased = 1 - (1 - progress) * (1 - progress) * (1 - progress);
+            drawnX[ordinal] = fromX[ordinal] + (int) Math.round((card.getcornerX() - fromX[ordinal]) * eased);
+            drawnY[ordinal] = fromY[ordinal] + (int) Math.round((card.getcornerY() - fromY[ordinal]) * eased);
+            addBounds(card, drawnX[ordinal], drawnY[ordinal]);
+            flying[kept++] = ordinal;
+        }
+        flyingCount = kept;
+        if (flyingCount == 0)
+        {
+            clock.stop();
+        }
+        if (!dirty.isEmpty())
+        {
+            panel.repaint(dirty);
+        }
+    }
+    /**
+     * Lands every card in flight at once, for example when a card is picked up or the table is
+     * laid out again
+     */
+    public void finish()
+    {
+        if (flyingCount == 0)
+        {
+            return;
+        }
+        frame(Long.MAX_VALUE / 2);
+    }
+    /**
+     * Draws the cards in flight where they are, except the ones waiting to be dealt
+     * @param graphic the graphics context to draw on
+     */
+    public void draw(Graphics graphic)
+    {
+        for (int i = 0; i < flyingCount; i++)
+        {
+            int ordinal = flying[i];
+            if (startNanos[ordinal] <= frameNanos)
+            {
+                cards[ordinal].drawAt(graphic, drawnX[ordinal], drawnY[ordinal]);
+            }
+        }
+    }
+    /**
+     * @return whether a card is in flight
+     */
+    public boolean isAnimating()
+    {
+        return flyingCount > 0;
+    }
+    /**
+     * @return the number of times a card took off or landed
+     */
+    public int getModCount()
+    {
+        return modCount;
+    }
+    /**
+     * Adds the area of a card drawn somewhere to the dirty area
+     * @param card the card
+     * @param x the x location it is drawn at
+     * @param y the y location it is drawn at
+     */
+    private void addBounds(Card card, int x, int y)
+    {
+        dirty.add(x, y);
+        dirty.add(x + card.getWidth() + 1, y + card.getHeight() + 1);
+    }
+}
@@ -0,0 +1,150 @@
+public final class CardCode
+{
+    /**
+     * CardCode.java
+     * The primitive identity of a card, packed in a single byte. The low four bits hold the face
+     * (0 = ace ... 12 = king, the index in Card.FACES) and the next two bits hold the suit (the index
+     * in Card.SUITS). The color is derived from the suit with a mask, so every rule check is a few
+     * bit operations and never allocates or compares strings.
+     */
+    private CardCode()
+    {
+    }
+    /**
+     * Number of cards in a deck
+     */
+    public static final int COUNT = 52;
+    /**
+     * Number of faces in a suit
+     */
+    public static final int FACE_COUNT = 13;
+    /**
+     * Number of suits in a deck
+     */
+    public static final int SUIT_COUNT = 4;
+    /**
+     * Marks the absence of a card, for example the top of an empty pile
+     */
+    public static final int NONE = -1;
+
+    public static final int FACE_MASK = 0x0F;
+    public static final int SUIT_SHIFT = 4;
+    public static final int SUIT_MASK = 0x30;
+    /**
+     * Bit i is set when the suit with index i is red (hearts and diamonds)
+     */
+    private static final int RED_SUITS = 0b0110;
+
+    public static final int ACE = 0;
+    public static final int KING = 12;
+
+    /**
+     * Packs a suit and a face into a card code
+     * @param suit the index of the suit in Card.SUITS
+     * @param face the index of the face in Card.FACES
+     * @return the card code
+     */
+    public static byte encode(int suit, int face)
+    {
+        if (suit < 0 || suit >= SUIT_COUNT || face < 0 || face >= FACE_COUNT)
+        {
+            throw new IllegalArgumentException("Invalid card: suit " + suit + ", face " + face);
+        }
+        return (byte) ((suit << SUIT_SHIFT) | face);
+    }
+    /**
+     * @param code a card code
+     * @return the index of the face in Card.FACES
+     */
+    public static int face(int code)
+    {
+        return code & FACE_MASK;
+    }
+    /**
+     * @param code a card code
+     * @return the index of the suit in Card.SUITS
+     */
+    public static int suit(int code)
+    {
+        return (code & SUIT_MASK) >>> SUIT_SHIFT;
+    }
+    /**
+     * @param code a card code
+     * @return whether the card is a heart or a diamond
+     */
+    public static boolean isRed(int code)
+    {
+        return ((RED_SUITS >>> suit(code)) & 1) != 0;
+    }
+    /**
+     * Returns the dense index of a card, suit major, in the range 0..51
+     * @param code a card code
+     * @return the ordinal of the card
+     */
+    public static int ordinal(int code)
+    {
+        return suit(code) * FACE_COUNT + face(code);
+    }
+    /**
+     * @param ordinal a dense index in the range 0..51
+     * @return the card code with that ordinal
+     */
+    public static byte fromOrdinal(int ordinal)
+    {
+        return encode(ordinal / FACE_COUNT, ordinal % FACE_COUNT);
+    }
+    /**
+     * @param code a card code
+     * @return whether the card is a king
+     */
+    public static boolean isKing(int code)
+    {
+        return face(code) == KING;
+    }
+    /**
+     * @param code a card code
+     * @return whether the card is an ace
+     */
+    public static boolean isAce(int code)
+    {
+        return face(code) == ACE;
+    }
+    /**
+     * Returns whether a card may be put on a main pile whose top card is target: the colors must
+     * alternate and the face must be one lower. An empty main pile (target == NONE) only takes a king.
+     * @param code the card to put down
+     * @param target the top card of the main pile or NONE
+     * @return whether the move respects the main pile rules
+     */
+    public static boolean canStackOnMain(int code, int target)
+    {
+        if (target == NONE)
+        {
+            return isKing(code);
+        }
+        return isRed(code) != isRed(target) && face(code) + 1 == face(target);
+    }
+    /**
+     * Returns whether a card may be put on a suit pile whose top card is target: the suit must be
+     * the same and the face must be one higher. An empty suit pile (target == NONE) only takes an ace.
+     * @param code the card to put down
+     * @param target the top card of the suit pile or NONE
+     * @return whether the move respects the suit pile rules
+     */
+    public static boolean canStackOnSuit(int code, int target)
+    {
+        if (target == NONE)
+        {
+            return isAce(code);
+        }
+        return (code & SUIT_MASK) == (target & SUIT_MASK) && face(code) == face(target) + 1;
+    }
+    /**
+     * @param code a card code
+     * @return the string: "<face> of <suit>"
+     */
+    public static String toString(int code)
+    {
+        return Card.FACES[face(code)] + " of " + Card.SUITS[suit(code)];
+    }
+}
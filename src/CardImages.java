@@ -0,0 +1,146 @@
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class CardImages
+{
+    /**
+     * CardImages.java
+     * The process-wide registry of card images. Every face image and the back image are decoded
+     * exactly once per JVM, in the background by AssetLoader, and are shared by every Card.
+     * The registry is immutable after it has been loaded. The images are cut from the
+     * SpriteSheet of the game.
+     */
+    private static final String[] SUIT_FOLDERS = {"Frunza", "Inima", "Romb", "Trefla"};
+    /**
+     * File name prefix for every face, in the same order as Card.FACES
+     */
+    private static final String[] FACE_FILES = {"a", "2", "3", "4", "5", "6", "7", "8", "9", "t", "j", "q", "k"};
+    /**
+     * File name suffix for every suit, in the same order as Card.SUITS
+     */
+    private static final String[] SUIT_FILES = {"s", "h", "d", "c"};
+    /**
+     * Number of distinct face images
+     */
+    public static final int IMAGE_COUNT = SUIT_FILES.length * FACE_FILES.length;
+
+    private CardImages()
+    {
+    }
+    /**
+     * The face images indexed by indexOf followed by the back image, or null until the sprite
+     * sheet is decoded by AssetLoader. Cut at most a few times, and the same images every time.
+     */
+    private static volatile BufferedImage[] images;
+    /**
+     * Returns the index of the face image for a suit and a face
+     * @param suitIndex the index of the suit in Card.SUITS
+     * @param faceIndex the index of the face in Card.FACES
+     * @return the image index or -1 if one of the indexes is not valid
+     */
+    public static int indexOf(int suitIndex, int faceIndex)
+    {
+        if (suitIndex < 0 || suitIndex >= SUIT_FILES.length || faceIndex < 0 || faceIndex >= FACE_FILES.length)
+        {
+            return -1;
+        }
+        return suitIndex * FACE_FILES.length + faceIndex;
+    }
+    /**
+     * @param index the image index returned by indexOf
+     * @return the decoded face image or null if the index is not valid, the images are not decoded
+     *         yet or the image could not be read
+     */
+    public static BufferedImage getFaceImage(int index)
+    {
+        BufferedImage[] loaded = loaded();
+        if (loaded == null || index < 0 || index >= IMAGE_COUNT)
+        {
+            return null;
+        }
+        return loaded[index];
+    }
+    /**
+     * @return the decoded back image, shared by every card, or null if the images are not decoded yet
+     */
+    public static BufferedImage getBackImage()
+    {
+        BufferedImage[] loaded = loaded();
+        return loaded == null ? null : loaded[IMAGE_COUNT];
+    }
+    /**
+     * @return every face image and the back image that could be read, or no image if they are
+     *         not decoded yet
+     */
+    public static List<BufferedImage> getImages()
+    {
+        BufferedImage[] loaded = loaded();
+        List<BufferedImage> list = new ArrayList<BufferedImage>();
+        for (int i = 0; loaded != null && i < loaded.length; i++)
+        {
+            if (loaded[i] != null)
+            {
+                list.add(loaded[i]);
+            }
+        }
+        return list;
+    }
+    /**
+     * @return whether the images are decoded; until then cards are drawn as placeholders
+     */
+    public static boolean isLoaded()
+    {
+        return loaded() != null;
+    }
+    /**
+     * @return the images, or null if the sprite sheet is not decoded yet
+     */
+    private static BufferedImage[] loaded()
+    {
+        BufferedImage[] loaded = images;
+        if (loaded == null)
+        {
+            SpriteSheet sheet = AssetLoader.getLoadedSheet();
+            if (sheet != null)
+            {
+                loaded = cut(sheet);
+                images = loaded;
+            }
+        }
+        return loaded;
+    }
+    /**
+     * Gets every image from the sprite sheet
+     * @param sheet the sprite sheet
+     * @return the face images indexed by indexOf followed by the back image
+     */
+    private static BufferedImage[] cut(SpriteSheet sheet)
+    {
+        BufferedImage[] cards = new BufferedImage[IMAGE_COUNT + 1];
+        for (int i = 0; i < SUIT_FILES.length; i++)
+        {
+            for (int j = 0; j < FACE_FILES.length; j++)
+            {
+                cards[indexOf(i, j)] = load(sheet, SUIT_FOLDERS[i] + "/" + FACE_FILES[j] + SUIT_FILES[i] + ".gif");
+            }
+        }
+        cards[IMAGE_COUNT] = load(sheet, "b.gif");
+        return cards;
+    }
+    /**
+     * Gets a single image from the sprite sheet
+     * @param sheet the sprite sheet
+     * @param name the path of the image relative to the images directory
+     * @return the image or null if it is not in the sheet
+     */
+    private static BufferedImage load(SpriteSheet sheet, String name)
+    {
+        BufferedImage image = sheet.getImage(name);
+        if (image == null)
+        {
+            System.out.println("Error reading image " + name);
+        }
+        return image;
+    }
+}
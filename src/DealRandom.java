@@ -0,0 +1,82 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class DealRandom
+{
+    /**
+     * DealRandom.java
+     * The random number generator behind every deal: SplitMix64, written out here so the same deal
+     * number gives the same sequence, and so the same layout, on every JVM and every version of
+     * Java. It is fast and passes the usual statistical tests.
+     */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    /**
+     * Source of new deal numbers, seeded from the clocks when the class is loaded
+     */
+    private static final AtomicLong DEAL_NUMBERS = new AtomicLong(mix64(System.currentTimeMillis()) ^ mix64(System.nanoTime()));
+
+    private long seed;
+
+    /**
+     * Constructs the generator of a deal number
+     * @param seed the deal number
+     */
+    public DealRandom(long seed)
+    {
+        this.seed = seed;
+    }
+    /**
+     * Picks the number of a new deal. Numbers differ from one call to the next and from one run to
+     * the next, but unlike the deals themselves they are not meant to be reproducible.
+     * @return a new deal number
+     */
+    public static long newDealNumber()
+    {
+        return mix64(DEAL_NUMBERS.addAndGet(GOLDEN_GAMMA));
+    }
+    /**
+     * @return the next 64 random bits
+     */
+    public long nextLong()
+    {
+        seed += GOLDEN_GAMMA;
+        return mix64(seed);
+    }
+    /**
+     * Returns a uniformly distributed int in [0, bound), without modulo bias
+     * @param bound the upper bound, exclusive, must be positive
+     * @return the random int
+     */
+    public int nextInt(int bound)
+    {
+        if (bound <= 0)
+        {
+            throw new IllegalArgumentException("bound must be positive");
+        }
+        int limit = Integer.MAX_VALUE - Integer.MAX_VALUE % bound;
+        int bits;
+        do
+        {
+            bits = (int) (nextLong() >>> 33);
+        }
+        while (bits >= limit);
+        return bits % bound;
+    }
+    /**
+     * @return a uniformly distributed double in [0, 1)
+     */
+    public double nextDouble()
+    {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+    /**
+     * The SplitMix64 finalizer
+     * @param z the value to mix
+     * @return the mixed value
+     */
+    private static long mix64(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -1,86 +1,58 @@
 import java.awt.Graphics;
+import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
 import java.util.ArrayList;
-import java.util.Random;
 
 public class Deck {
 
     /**
      * Deck.java
-     * A deck is a list of 52 cards.
+     * A deck is a list of 52 cards. Once the game has been laid out it is the view of the stock.
      */
     private ArrayList<Card> deck;
     /**
      * The location of the deck at (xLocation, yLocation)
      */
     private int xLocation, yLocation;
+    /**
+     * The size of a card, which follows the TableLayout of the panel
+     */
+    private int cardWidth = Card.WIDTH, cardHeight = Card.HEIGHT;
+    /**
+     * Number of times cards have been added to or removed from the deck
+     */
+    private int modCount;
     /**
      * No-arg constructor that adds 52 cards to the deck and shuffles it depending on the level
      * @param argument the level selected for making the shuffle
      */
     public Deck(String argument)
     {
-        deck = new ArrayList<Card>();
-        for (int i = 0; i < Card.SUITS.length; i++)
-        {
-            for (int j = 0; j < Card.FACES.length; j++)
-            {
-                deck.add(new Card(Card.FACES[j], Card.SUITS[i]));
-            }
-        }
-        if(argument.equals("level2"))
-        {
-            shuffleDeckLevel2();
-        }
-        else
-        {
-            shuffleDeckLevel1();
-        }
+        this(KlondikeDeal.shuffle(argument));
     }
     /**
-     * Draws each card in the deck
-     * @param graphic the graphics context to draw the deck on
+     * Constructor that adds a view for every card of a deal, in the order of the deal
+     * @param deal the deal to take the cards from
      */
-    public void draw(Graphics graphic)
+    public Deck(KlondikeDeal deal)
     {
-        for (int i = 0; i < deck.size(); i++)
+        deck = new ArrayList<Card>(CardCode.COUNT);
+        for (int i = 0; i < CardCode.COUNT; i++)
         {
-            this.getCardAt(i).draw(graphic);
+            deck.add(new Card(deal.getCardAt(i)));
         }
     }
     /**
-     * Shuffles the deck of cards for level 1
-     */
-    private void shuffleDeckLevel1()
-    {
-        Random random=new Random();
-        for (int i = 0; i < deck.size(); i++) {
-            int index = i+random.nextInt(deck.size()-i);
-            swap(i, index);
-        }
-    }
-    /**
-     * Shuffles the deck of cards for level 2
+     * Draws each card in the deck
+     * @param graphic the graphics context to draw the deck on
      */
-    private void shuffleDeckLevel2()
+    public void draw(Graphics graphic)
     {
         for (int i = 0; i < deck.size(); i++)
         {
-            int index = (int)(Math.random() * deck.size());
-            swap(i, index);
+            this.getCardAt(i).draw(graphic);
         }
     }
-    /**
-     * Swaps two cards in a deck
-     * @param index the first index
-     * @param i the second index
-     */
-    private void swap(int index, int i)
-    {
-        Card temp = this.getCardAt(index);
-        this.setCardAt(index, this.getCardAt(i));
-        this.setCardAt(i, temp);
-    }
     /**
      * Returns the card at the specified index
      * @param index the index of the card to return
@@ -103,21 +75,10 @@ public class Deck {
     {
         if (inBounds(index))
         {
+            modCount++;
             deck.remove(index);
         }
     }
-    /**
-     * Sets the card at index to c
-     * @param index the index to set
-     * @param card the card to set
-     */
-    private void setCardAt(int index, Card card)
-    {
-        if (inBounds(index))
-        {
-            deck.set(index, card);
-        }
-    }
     /**
      * Returns whether i is a valid index in the deck
      * @param i the index to check
@@ -133,8 +94,8 @@ public class Deck {
      */
     public boolean hasBeenClicked(MouseEvent event)
     {
-        return (event.getX() >= xLocation && event.getX() <= xLocation + Card.WIDTH) &&
-                (event.getY() >= yLocation && event.getY() <= yLocation + Card.HEIGHT);
+        return (event.getX() >= xLocation && event.getX() <= xLocation + cardWidth) &&
+                (event.getY() >= yLocation && event.getY() <= yLocation + cardHeight);
     }
     /**
      * Wrapper class for ArrayList.size()
@@ -154,6 +115,16 @@ public class Deck {
 
         return null;
     }
+    /**
+     * @return the code of the card at the top of the deck or CardCode.NONE if the deck is empty
+     */
+    public int getCodeOnTop()
+    {
+        if (getSize() > 0)
+            return deck.get(getSize() - 1).getCode();
+
+        return CardCode.NONE;
+    }
     /**
      * Removes the card at the top of the deck
      */
@@ -162,6 +133,34 @@ public class Deck {
         if (getSize() > 0)
             this.removeCardAt(getSize() - 1);
     }
+    /**
+     * Adds the area the deck is drawn on to a region, for repainting only what changed
+     * @param region the region to grow; an empty region (negative width) is replaced by the bounds
+     */
+    public void addBoundsTo(Rectangle region)
+    {
+        region.add(xLocation, yLocation);
+        region.add(xLocation + cardWidth + 1, yLocation + cardHeight + 1);
+    }
+    /**
+     * Moves the deck and its cards for a layout of the table. The size of the cards themselves is
+     * set by the panel.
+     * @param x the x location of the deck
+     * @param y the y location of the deck
+     * @param layout the layout of the table
+     */
+    public void setLayout(int x, int y, TableLayout layout)
+    {
+        modCount++;
+        xLocation = x;
+        yLocation = y;
+        cardWidth = layout.getCardWidth();
+        cardHeight = layout.getCardHeight();
+        for (int i = 0; i < deck.size(); i++)
+        {
+            deck.get(i).setLocation(x, y);
+        }
+    }
     /**
      * @return the x location of the deck
      */
@@ -187,29 +186,29 @@ public class Deck {
     }
 
     /**
-     * Adds a card to the deck
+     * Adds a card to the top of the deck
      * @param card the card to add
      */
-    private void addToDeck(Card card)
+    public void addToDeck(Card card)
     {
+        modCount++;
         this.deck.add(card);
         card.setLocation(xLocation, yLocation);
     }
     /**
-     * Adds the pile p to the deck and removes the cards from p only if the deck has no cards in it
-     * @param pile the pile to add
+     * Removes every card from the deck
      */
-    public void addToDeck(Pile pile)
+    public void clear()
     {
-        if (this.getSize() == 0)
-        {
-            while (!pile.isEmpty())
-            {
-                this.addToDeck(pile.getCardAt(pile.getSize() - 1));
-                pile.removeCardAt(pile.getSize() - 1);
-            }
-            turnAllCardsDown();
-        }
+        modCount++;
+        deck.clear();
+    }
+    /**
+     * @return the number of times cards have been added to or removed from the deck
+     */
+    public int getModCount()
+    {
+        return modCount;
     }
 
 }
@@ -0,0 +1,137 @@
+import java.awt.Graphics;
+import java.awt.Rectangle;
+
+public final class DragSlice
+{
+    /**
+     * DragSlice.java
+     * The cards being dragged: the top of a pile from a start index, drawn moved by an offset.
+     * Picking cards up only lifts them on their pile (see Pile.lift), so nothing is copied or
+     * allocated. The cards change pile only when the game state accepts the move, after which the
+     * piles are synced from it; a rejected drop just puts them back.
+     */
+    private Pile pile;
+    /**
+     * The KlondikeState number of the pile
+     */
+    private int pileId;
+    private int start;
+    private int offsetX, offsetY;
+
+    /**
+     * Picks up the cards from an index to the top of a pile
+     * @param pile the pile to take the cards from
+     * @param pileId the KlondikeState number of the pile
+     * @param start the index of the first card picked up
+     */
+    public void pickUp(Pile pile, int pileId, int start)
+    {
+        release();
+        this.pile = pile;
+        this.pileId = pileId;
+        this.start = start;
+        offsetX = 0;
+        offsetY = 0;
+        pile.lift(start);
+    }
+    /**
+     * Puts the cards back on their pile and ends the drag, or does nothing if nothing is dragged
+     */
+    public void release()
+    {
+        if (pile != null)
+        {
+            pile.putBack();
+            pile = null;
+        }
+    }
+    /**
+     * Moves the cards
+     * @param dx the distance to move them right
+     * @param dy the distance to move them down
+     */
+    public void moveBy(int dx, int dy)
+    {
+        offsetX += dx;
+        offsetY += dy;
+    }
+    /**
+     * @return whether cards are being dragged
+     */
+    public boolean isActive()
+    {
+        return pile != null;
+    }
+    /**
+     * @return the KlondikeState number of the pile the cards were picked up from
+     */
+    public int getPileId()
+    {
+        return pileId;
+    }
+    /**
+     * @return the pile the cards were picked up from
+     */
+    public Pile getPile()
+    {
+        return pile;
+    }
+    /**
+     * @return the number of cards being dragged
+     */
+    public int getSize()
+    {
+        return pile.getSize() - start;
+    }
+    /**
+     * @return how far right of their place the cards are dragged
+     */
+    public int getOffsetX()
+    {
+        return offsetX;
+    }
+    /**
+     * @return how far below their place the cards are dragged
+     */
+    public int getOffsetY()
+    {
+        return offsetY;
+    }
+    /**
+     * @return the x location of the first card being dragged
+     */
+    public int getX()
+    {
+        return pile.getCardAt(start).getcornerX() + offsetX;
+    }
+    /**
+     * @return the y location of the first card being dragged
+     */
+    public int getY()
+    {
+        return pile.getCardAt(start).getcornerY() + offsetY;
+    }
+    /**
+     * Draws the cards being dragged where they are now
+     * @param graphic the graphics context to draw on
+     */
+    public void draw(Graphics graphic)
+    {
+        for (int i = start; i < pile.getSize(); i++)
+        {
+            Card card = pile.getCardAt(i);
+            card.drawAt(graphic, card.getcornerX() + offsetX, card.getcornerY() + offsetY);
+        }
+    }
+    /**
+     * Adds the area the cards being dragged are drawn on to a region, for repainting only what changed
+     * @param region the region to grow
+     */
+    public void addBoundsTo(Rectangle region)
+    {
+        int x = getX();
+        int y = getY();
+        region.add(x, y);
+        region.add(x + pile.getCardWidth() + 1, y + pile.getCardHeight() + (getSize() - 1) * pile.getVerticalSpace() + 1);
+    }
+}
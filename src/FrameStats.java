@@ -0,0 +1,206 @@
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.event.MouseEvent;
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+public final class FrameStats implements FrameStatsMXBean
+{
+    /**
+     * FrameStats.java
+     * Measures how smooth the game is where it is played, without a profiler: the time of every
+     * paint of the table, the time every mouse handler holds the Event Dispatch Thread, the latency
+     * from a mouse event to the paint that shows it and the rate of the paints, each counted in a
+     * LatencyHistogram. The measures are exposed through JMX (see FrameStatsMXBean) and drawn by
+     * GamePanel over the table when F3 is pressed.
+     *
+     * A measure is two calls to System.nanoTime and an increment, and none allocates, so they are
+     * always on. There is one instance for the whole game, shared by every panel; only the Event
+     * Dispatch Thread records, JMX clients read from their own thread.
+     */
+    /**
+     * Name of the MXBean on the platform MBean server
+     */
+    public static final String OBJECT_NAME = "Klondike:type=FrameStats";
+    /**
+     * Paints further apart than this are not counted in the paint interval: the panel was idle
+     */
+    private static final long IDLE_NANOS = 250000000L;
+    /**
+     * Events older than this when handled have a timestamp from another clock, and are measured
+     * from when they were handled
+     */
+    private static final long MAX_QUEUE_MILLIS = 10000;
+    private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+    private static final Color BOX_COLOR = new Color(0, 0, 0, 180);
+
+    private static final FrameStats DEFAULT = new FrameStats();
+
+    private final LatencyHistogram paint = new LatencyHistogram();
+    private final LatencyHistogram mousePressed = new LatencyHistogram();
+    private final LatencyHistogram mouseDragged = new LatencyHistogram();
+    private final LatencyHistogram mouseReleased = new LatencyHistogram();
+    private final LatencyHistogram eventToPaint = new LatencyHistogram();
+    private final LatencyHistogram paintInterval = new LatencyHistogram();
+    /**
+     * When the oldest mouse event not painted yet happened, or 0
+     */
+    private long pendingEventNanos;
+    /**
+     * When the last paint ended, or 0
+     */
+    private volatile long lastPaintNanos;
+    /**
+     * The paints counted since windowStartNanos, and the rate of the last whole second
+     */
+    private long windowStartNanos;
+    private int windowPaints;
+    private volatile double paintsPerSecond;
+
+    /**
+     * @return the measures of the game
+     */
+    public static FrameStats getDefault()
+    {
+        return DEFAULT;
+    }
+    /**
+     * Registers the measures of the game on the platform MBean server, in the background: the
+     * server takes a while to start and is not needed to play
+     */
+    public static void register()
+    {
+        AssetLoader.getExecutor().execute(new Runnable() {
+            public void run() {
+                try
+                {
+                    ManagementFactory.getPlatformMBeanServer().registerMBean(DEFAULT, new ObjectName(OBJECT_NAME));
+                }
+                catch (JMException e)
+                {
+                    System.out.println("Error registering " + OBJECT_NAME + ": " + e.getMessage());
+                }
+            }
+        });
+    }
+    /**
+     * Records a paint of the table
+     * @param startNanos when the paint started, as a value of System.nanoTime
+     * @param endNanos when it ended
+     */
+    public void painted(long startNanos, long endNanos)
+    {
+        paint.record(endNanos - startNanos);
+        if (pendingEventNanos != 0)
+        {
+            eventToPaint.record(endNanos - pendingEventNanos);
+            pendingEventNanos = 0;
+        }
+        if (lastPaintNanos != 0 && endNanos - lastPaintNanos < IDLE_NANOS)
+        {
+            paintInterval.record(endNanos - lastPaintNanos);
+        }
+        lastPaintNanos = endNanos;
+        windowPaints++;
+        long window = endNanos - windowStartNanos;
+        if (window >= 1000000000L)
+        {
+            paintsPerSecond = window < 2000000000L ? windowPaints * 1e9 / window : 0;
+            windowStartNanos = endNanos;
+            windowPaints = 0;
+        }
+    }
+    /**
+     * Records a mouse handler
+     * @param event the event handled
+     * @param startNanos when the handler started, as a value of System.nanoTime
+     * @param repainted whether the handler asked for a repaint, whose latency is then measured
+     */
+    public void handled(MouseEvent event, long startNanos, boolean repainted)
+    {
+        long endNanos = System.nanoTime();
+        LatencyHistogram histogram = event.getID() == MouseEvent.MOUSE_PRESSED ? mousePressed
+                : event.getID() == MouseEvent.MOUSE_DRAGGED ? mouseDragged : mouseReleased;
+        histogram.record(endNanos - startNanos);
+        if (repainted && pendingEventNanos == 0)
+        {
+            // the event is timestamped in milliseconds of the wall clock when it is queued
+            long queuedMillis = System.currentTimeMillis() - event.getWhen();
+            pendingEventNanos = startNanos - (queuedMillis >= 0 && queuedMillis < MAX_QUEUE_MILLIS ? queuedMillis * 1000000L : 0);
+        }
+    }
+    public LatencyHistogram.Summary getPaint()
+    {
+        return paint.getSummary();
+    }
+    public LatencyHistogram.Summary getMousePressed()
+    {
+        return mousePressed.getSummary();
+    }
+    public LatencyHistogram.Summary getMouseDragged()
+    {
+        return mouseDragged.getSummary();
+    }
+    public LatencyHistogram.Summary getMouseReleased()
+    {
+        return mouseReleased.getSummary();
+    }
+    public LatencyHistogram.Summary getEventToPaint()
+    {
+        return eventToPaint.getSummary();
+    }
+    public LatencyHistogram.Summary getPaintInterval()
+    {
+        return paintInterval.getSummary();
+    }
+    public double getPaintsPerSecond()
+    {
+        return System.nanoTime() - lastPaintNanos < IDLE_NANOS ? paintsPerSecond : 0;
+    }
+    public void reset()
+    {
+        paint.reset();
+        mousePressed.reset();
+        mouseDragged.reset();
+        mouseReleased.reset();
+        eventToPaint.reset();
+        paintInterval.reset();
+    }
+    /**
+     * Draws the measures in a box, for the debug overlay
+     * @param graphic the graphics context to draw on
+     * @param x the x location of the left of the box
+     * @param bottom the y location of the bottom of the box
+     */
+    public void draw(Graphics graphic, int x, int bottom)
+    {
+        String[] lines = {
+            "paint    " + paint.getSummary(),
+            "pressed  " + mousePressed.getSummary(),
+            "dragged  " + mouseDragged.getSummary(),
+            "released " + mouseReleased.getSummary(),
+            "to paint " + eventToPaint.getSummary(),
+            "interval " + paintInterval.getSummary(),
+            "paints/s " + Math.round(getPaintsPerSecond()),
+        };
+        graphic.setFont(FONT);
+        FontMetrics metrics = graphic.getFontMetrics();
+        int width = 0;
+        int height = lines.length * metrics.getHeight() + 8;
+        int y = bottom - height;
+        for (String line : lines)
+        {
+            width = Math.max(width, metrics.stringWidth(line));
+        }
+        graphic.setColor(BOX_COLOR);
+        graphic.fillRect(x, y, width + 8, height);
+        graphic.setColor(Color.white);
+        for (int i = 0; i < lines.length; i++)
+        {
+            graphic.drawString(lines[i], x + 4, y + 4 + i * metrics.getHeight() + metrics.getAscent());
+        }
+    }
+}
@@ -0,0 +1,37 @@
+public interface FrameStatsMXBean
+{
+    /**
+     * FrameStatsMXBean.java
+     * The frame times and input latencies of the game, as seen by JMX clients such as JConsole or
+     * VisualVM under Klondike:type=FrameStats. Every attribute is a summary of a histogram in
+     * milliseconds, see LatencyHistogram.Summary, counted since the start or the last reset.
+     */
+    /**
+     * @return the time GamePanel.paintComponent takes
+     */
+    LatencyHistogram.Summary getPaint();
+    /**
+     * @return the time the mouse handlers hold the Event Dispatch Thread, per kind of event
+     */
+    LatencyHistogram.Summary getMousePressed();
+    LatencyHistogram.Summary getMouseDragged();
+    LatencyHistogram.Summary getMouseReleased();
+    /**
+     * @return the time from a mouse event that changed the table to the end of the first paint
+     *         after it, including the time the event waited in the queue
+     */
+    LatencyHistogram.Summary getEventToPaint();
+    /**
+     * @return the time between two paints while the panel repaints continuously, during a drag or
+     *         an animation
+     */
+    LatencyHistogram.Summary getPaintInterval();
+    /**
+     * @return the number of paints in the last whole second, 0 when the panel is idle
+     */
+    double getPaintsPerSecond();
+    /**
+     * Forgets every measure, for example before reproducing a slow interaction
+     */
+    void reset();
+}
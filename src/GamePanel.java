@@ -1,7 +1,16 @@
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import javax.swing.*;
 
 public class GamePanel extends JPanel
@@ -9,88 +18,519 @@ public class GamePanel extends JPanel
     /**
      * GamePanel.java
      * The panel that Solitaire is painted on. It is responsible for drawing
-     * and initializing all game objects (the deck and all piles).
+     * and initializing all game objects (the deck and all piles). The rules live in the headless
+     * KlondikeState; the piles and the deck are only views that are synced from it.
+     *
+     * Where everything is drawn follows the size of the panel: when it is resized, or moved to a
+     * screen with another scale factor, doLayout makes a new TableLayout, moves the piles and has
+     * the images scaled to the new size in the background (see ScaledImageCache).
      */
     private Deck deck;
     /**
-     * Horizontal space between rows of cards
+     * The state of the game, the only place where moves are checked and applied
      */
-    public static final int HORIZONTAL_SPACE = 35;
+    private final KlondikeState state;
     /**
-     * The game score. When the game score is 0, the game will be finished
+     * The deal being played
      */
-    private static int score;
+    private KlondikeDeal deal;
     /**
-     * the filed where the score is visible
+     * Every move played, for undo and redo
      */
-    private static JTextField scoreBox = new JTextField();
-
+    private final MoveLog moveLog;
+    /**
+     * Every move, undo and redo with its time, to replay the game later, or null for a position
+     * shown from a replay
+     */
+    private GameRecording recording;
+    /**
+     * The legal moves of the state, kept up to date after every move
+     */
+    private final MoveTracker moveTracker;
+    /**
+     * The move shown by the hint key, or -1
+     */
+    private int hintMove = -1;
+    /**
+     * Where the cards of the hint are and where they go
+     */
+    private final Rectangle hintSource = new Rectangle();
+    private final Rectangle hintTarget = new Rectangle();
+    /**
+     * Solves the game from the current position on request, created the first time it is needed
+     */
+    private BackgroundSolver solver;
+    /**
+     * The messages drawn over the table: the end of the game, the tip and the status
+     */
+    private final MessageOverlay overlay = new MessageOverlay(this);
+    /**
+     * Where the game is saved after every move, or null
+     */
+    private Autosave autosave;
+    /**
+     * The value of System.nanoTime when the panel was created
+     */
+    private long startNanos;
+    /**
+     * Time played before the panel was created, for a resumed game
+     */
+    private long elapsedBeforeMillis;
     /**
-     * X locations of every main pile
+     * The view of every card, indexed by CardCode.ordinal
      */
-    public static final int[] MAIN_PILE_X_LOCATIONS = {(HORIZONTAL_SPACE),
-            (HORIZONTAL_SPACE*2) + (Card.WIDTH),
-            (HORIZONTAL_SPACE*3) + (Card.WIDTH * 2),
-            (HORIZONTAL_SPACE*4) + (Card.WIDTH * 3),
-            (HORIZONTAL_SPACE*5) + (Card.WIDTH * 4),
-            (HORIZONTAL_SPACE*6) + (Card.WIDTH * 5),
-            (HORIZONTAL_SPACE*7) + (Card.WIDTH * 6)};
+    private final Card[] cards;
     /**
-     * The y location of each main pile
+     * Where the piles are and how big the cards are, for the size of the panel
      */
-    public static final int MAIN_PILE_Y_LOCATION = 200;
+    private TableLayout layout = TableLayout.DEFAULT;
     /**
-     * X locations of each suit pile
+     * The score at the start of a game. It goes down by one every score period until it reaches 0,
+     * when the game will be finished
      */
-    public static final int[] SUIT_PILE_X_LOCATIONS = {MAIN_PILE_X_LOCATIONS[3],
-            MAIN_PILE_X_LOCATIONS[4],
-            MAIN_PILE_X_LOCATIONS[5],
-            MAIN_PILE_X_LOCATIONS[6]};
+    public static final int INITIAL_SCORE = 10000;
     /**
-     * Y locations of each suit pile
+     * The time it takes the score to go down by one at level 1 and at level 2
      */
-    public static final int SUIT_PILE_Y_LOCATION = 50;
+    public static final int SCORE_PERIOD_LEVEL1_MILLIS = 4000;
+    public static final int SCORE_PERIOD_LEVEL2_MILLIS = 2000;
+    /**
+     * The time it takes the score of this game to go down by one
+     */
+    private int scorePeriodMillis;
+    /**
+     * the filed where the score is visible
+     */
+    private final JTextField scoreBox = new JTextField();
+    /**
+     * The score shown in scoreBox
+     */
+    private int shownScore = -1;
+    /**
+     * Wakes up when the score goes down, while the panel is in a window
+     */
+    private final Timer clock;
 
     private final Pile[] mainPiles;
     private final Pile[] suitPiles;
 
     private final Pile   deckPile;
     /**
-     * The selected Pile is always drawn last (so it is on top of everything else)
+     * Finds the pile under the mouse and where a dragged card is dropped
+     */
+    private final PileIndex pileIndex;
+    /**
+     * The cards being dragged are always drawn last (so they are on top of everything else)
+     */
+    private final DragSlice drag;
+    /**
+     * Moves the cards whose place changed to their new place, drawn over the table
+     */
+    private final CardAnimator animator;
+    /**
+     * Whether the cards are dealt from the deck the next time the panel is shown
      */
-    public Pile selectedPile;
+    private boolean dealPending;
 
     public Razvan razvan;
 
-    public static int RAZVAN_XLOCATION=720;
-    public static int RAZVAN_YLOCATION=600;
     /**
-     * Constructor for a game panel. Adds mouse listeners and the score, initializes deck, piles and Razvan object
+     * The table without the cards being dragged: every pile, the deck and Razvan, drawn once and then
+     * reused by every paint until a pile or the deck changes
+     */
+    private BufferedImage background;
+    /**
+     * The sum of the modification counts of the piles and the deck when background was drawn
+     */
+    private long backgroundVersion;
+    /**
+     * Whether the card images were decoded when background was drawn; it is drawn again once they are
+     */
+    private boolean backgroundLoaded;
+    /**
+     * Measures the paints, shared with the mouse listener
+     */
+    private final FrameStats stats = FrameStats.getDefault();
+    /**
+     * Whether the measures are drawn over the table, toggled by F3, and what repaints them
+     */
+    private boolean statsShown;
+    private Timer statsClock;
+    /**
+     * Time between two updates of the measures drawn over the table
+     */
+    private static final int STATS_MILLIS = 500;
+    /**
+     * Whether StartupClock has reported the startup, after which paints no longer tell it
+     */
+    private boolean startupOver;
+    /**
+     * Constructor for a game panel with a new random deal
      * @param argument the level selected
      */
     public GamePanel(String argument) {
+        this(KlondikeDeal.shuffle(argument));
+    }
+    /**
+     * Constructor for a game panel. Adds mouse listeners and the score, initializes deck, piles and Razvan object
+     * @param deal the deal to play, which also gives the level
+     */
+    public GamePanel(KlondikeDeal deal) {
         setBackground(new Color(0, 200, 153));
-        score=10000;
-        scoreBox.setText("Score: "+score);
-        makeScoreBox(argument);
-        deck         = new Deck(argument);
-        mainPiles    = new Pile[7];
-        suitPiles    = new Pile[4];
-        razvan=new Razvan(RAZVAN_XLOCATION,RAZVAN_YLOCATION);
+        setPreferredSize(new Dimension(TableLayout.REFERENCE_WIDTH, TableLayout.REFERENCE_HEIGHT));
+        scorePeriodMillis = deal.getLevel().equals("level2") ? SCORE_PERIOD_LEVEL2_MILLIS : SCORE_PERIOD_LEVEL1_MILLIS;
+        clock = new Timer(0, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                tick();
+            }
+        });
+        clock.setRepeats(false);
+        makeScoreBox();
+        this.deal    = deal;
+        deck         = new Deck(deal);
+        state        = new KlondikeState(deal);
+        moveLog      = new MoveLog();
+        recording    = new GameRecording(deal);
+        moveTracker  = new MoveTracker(state);
+        startNanos   = System.nanoTime();
+        showScore();
+        cards        = new Card[CardCode.COUNT];
+        mainPiles    = new Pile[KlondikeState.MAIN_PILE_COUNT];
+        suitPiles    = new Pile[KlondikeState.SUIT_PILE_COUNT];
+        razvan=new Razvan(layout.x(TableLayout.RAZVAN_X),layout.y(TableLayout.RAZVAN_Y));
+        deckPile     = new Pile(layout.getWasteX(), layout.getDeckY(), Pile.DECK_PILE, layout);
+        pileIndex    = new PileIndex(mainPiles, suitPiles, deckPile);
+        drag         = new DragSlice();
+        animator     = new CardAnimator(this, cards);
         setInitialLayout(deck);
-        deckPile     = new Pile(deck.getX() + Card.WIDTH + HORIZONTAL_SPACE, deck.getY(), Pile.DECK_PILE);
-        selectedPile = null;
         MouseListener listener = new MouseListener(this);
         this.addMouseListener(listener);
         this.addMouseMotionListener(listener);
         this.setFocusable(true);
+        addKeyBindings();
+    }
+    /**
+     * Constructor for a game panel that resumes a saved game. The score follows from the time played.
+     * @param saved the game to resume
+     */
+    public GamePanel(SavedGame saved) {
+        this(saved.getDeal());
+        state.copyFrom(saved.getState());
+        moveLog.copyFrom(saved.getMoveLog());
+        elapsedBeforeMillis = saved.getElapsedMillis();
+        showScore();
+        moveTracker.reset();
+        for (int i = 0; i < moveLog.getCursor(); i++) {
+            recording.recordMove(moveLog.getMove(i), elapsedBeforeMillis);
+        }
+        syncPiles();
+        // the cards of a resumed game are already in play, not dealt again
+        dealPending = false;
+    }
+    /**
+     * Starts a new game in this panel, keeping the window, the listeners and the card views: the
+     * state is laid out again, the score starts again and the cards are dealt again from the deck
+     * @param deal the deal to play, which also gives the level
+     */
+    public void newGame(KlondikeDeal deal) {
+        if (solver != null) {
+            solver.cancel();
+        }
+        animator.finish();
+        drag.release();
+        hideHint();
+        this.deal = deal;
+        scorePeriodMillis = deal.getLevel().equals("level2") ? SCORE_PERIOD_LEVEL2_MILLIS : SCORE_PERIOD_LEVEL1_MILLIS;
+        state.reset(deal);
+        moveLog.clear();
+        recording = new GameRecording(deal);
+        moveTracker.reset();
+        startNanos = System.nanoTime();
+        elapsedBeforeMillis = 0;
+        if (isDisplayable()) {
+            tick();
+        } else {
+            showScore();
+        }
+        overlay.update();
+        syncPiles();
+        if (isDisplayable()) {
+            animator.deal();
+        } else {
+            dealPending = true;
+        }
+        autosave();
+        repaint();
+    }
+    /**
+     * Binds Ctrl+Z to undo, Ctrl+Y (or Ctrl+Shift+Z) to redo, H to show a hint, S to solve the game
+     * from the current position, Escape to stop solving and F3 to show the frame times, wherever
+     * the focus is in the window
+     */
+    private void addKeyBindings() {
+        InputMap keys = getInputMap(WHEN_IN_FOCUSED_WINDOW);
+        keys.put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK), "undo");
+        keys.put(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK), "redo");
+        keys.put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK), "redo");
+        getActionMap().put("undo", new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                undo();
+            }
+        });
+        getActionMap().put("redo", new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                redo();
+            }
+        });
+        keys.put(KeyStroke.getKeyStroke(KeyEvent.VK_H, 0), "hint");
+        getActionMap().put("hint", new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                showHint();
+            }
+        });
+        keys.put(KeyStroke.getKeyStroke(KeyEvent.VK_S, 0), "solve");
+        getActionMap().put("solve", new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                getSolver().solve();
+            }
+        });
+        keys.put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), "cancelSolve");
+        getActionMap().put("cancelSolve", new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                if (solver != null) {
+                    solver.cancel();
+                }
+            }
+        });
+        keys.put(KeyStroke.getKeyStroke(KeyEvent.VK_F3, 0), "toggleStats");
+        getActionMap().put("toggleStats", new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                setStatsShown(!statsShown);
+            }
+        });
     }
     /**
      * Paints the screen on a graphics context
      * @param graphic the graphics context to paint on
      */
     protected void paintComponent(Graphics graphic) {
-        super.paintComponent(graphic);
+        long paintStart = System.nanoTime();
+        BufferedImage table = getBackgroundImage();
+        if (layout.getScale() == 1) {
+            graphic.drawImage(table, 0, 0, null);
+        } else {
+            ScaledImageCache.drawPixels(graphic, table, 0, 0);
+        }
+        animator.draw(graphic);
+        if (drag.isActive()) {
+            drag.draw(graphic);
+        }
+        if (hintMove >= 0) {
+            graphic.setColor(Color.yellow);
+            drawHintFrame(graphic, hintSource);
+            drawHintFrame(graphic, hintTarget);
+        }
+        overlay.draw(graphic);
+        stats.painted(paintStart, System.nanoTime());
+        if (statsShown) {
+            stats.draw(graphic, 4, getHeight() - 4);
+        }
+        if (!startupOver) {
+            startupOver = StartupClock.framePainted(backgroundLoaded);
+        }
+    }
+    /**
+     * Shows a line of text under the piles, for example the progress of a solve
+     * @param text the text, or null to remove it
+     */
+    public void setStatus(String text) {
+        overlay.setStatus(text);
+    }
+    /**
+     * Shows the tip of Razvan for a few seconds
+     */
+    public void showTip() {
+        overlay.showTip();
+    }
+    /**
+     * Shows or hides the frame times and input latencies over the table, updated every STATS_MILLIS
+     * @param shown whether to show them
+     */
+    public void setStatsShown(boolean shown) {
+        statsShown = shown;
+        if (statsClock == null) {
+            statsClock = new Timer(STATS_MILLIS, new ActionListener() {
+                public void actionPerformed(ActionEvent e) {
+                    repaint();
+                }
+            });
+        }
+        if (shown) {
+            statsClock.start();
+        } else {
+            statsClock.stop();
+        }
+        repaint();
+    }
+    /**
+     * @return the measures of the paints and of the mouse handlers
+     */
+    public FrameStats getFrameStats() {
+        return stats;
+    }
+    /**
+     * @return the solver of the game, created the first time it is needed
+     */
+    public BackgroundSolver getSolver() {
+        if (solver == null) {
+            solver = new BackgroundSolver(this);
+        }
+        return solver;
+    }
+    /**
+     * Starts the clock of the score when the panel is shown in a window, and repaints it once the
+     * card images are decoded if they are not yet
+     */
+    public void addNotify() {
+        super.addNotify();
+        if (dealPending) {
+            dealPending = false;
+            animator.deal();
+        }
+        tick();
+        overlay.update();
+        if (!CardImages.isLoaded()) {
+            AssetLoader.whenLoaded(new Runnable() {
+                public void run() {
+                    prepareImages();
+                    repaint();
+                }
+            });
+        }
+    }
+    /**
+     * Lays the table out again if the size of the panel or the scale factor of its screen changed
+     */
+    public void doLayout() {
+        super.doLayout();
+        GraphicsConfiguration configuration = getGraphicsConfiguration();
+        double scale = configuration != null ? configuration.getDefaultTransform().getScaleX() : 1;
+        TableLayout resized = new TableLayout(getWidth(), getHeight(), scale);
+        if (!resized.sameAs(layout)) {
+            setTableLayout(resized);
+        }
+    }
+    /**
+     * Moves every pile, the deck and Razvan and sizes every card for a layout, then has the
+     * images scaled to the new size in the background
+     * @param layout the layout
+     */
+    public void setTableLayout(TableLayout layout) {
+        this.layout = layout;
+        animator.finish();
+        drag.release();
+        hideHint();
+        for (int i = 0; i < cards.length; i++) {
+            cards[i].setSize(layout.getCardWidth(), layout.getCardHeight());
+        }
+        for (int i = 0; i < mainPiles.length; i++) {
+            mainPiles[i].setLayout(layout.getMainPileX(i), layout.getMainPileY(), layout);
+        }
+        for (int i = 0; i < suitPiles.length; i++) {
+            suitPiles[i].setLayout(layout.getSuitPileX(i), layout.getSuitPileY(), layout);
+        }
+        deckPile.setLayout(layout.getWasteX(), layout.getDeckY(), layout);
+        deck.setLayout(layout.getDeckX(), layout.getDeckY(), layout);
+        razvan.setLayout(layout);
+        overlay.setLayout(layout);
+        pileIndex.invalidate();
+        syncPiles();
+        prepareImages();
+        repaint();
+    }
+    /**
+     * @return the layout of the table
+     */
+    public TableLayout getTableLayout() {
+        return layout;
+    }
+    /**
+     * Has the card images and Razvan scaled to the size of the layout in the background, and
+     * draws the table again with them once they are
+     */
+    private void prepareImages() {
+        Map<BufferedImage, Dimension> targets = new LinkedHashMap<BufferedImage, Dimension>();
+        Dimension cardSize = new Dimension(layout.getCardPixelWidth(), layout.getCardPixelHeight());
+        for (BufferedImage image : CardImages.getImages()) {
+            targets.put(image, cardSize);
+        }
+        BufferedImage image = razvan.getImage();
+        if (image != null) {
+            int size = layout.toPixels(razvan.getSize());
+            targets.put(image, new Dimension(size, size));
+        }
+        ScaledImageCache.prepare(targets, new Runnable() {
+            public void run() {
+                background = null;
+                repaint();
+            }
+        });
+    }
+    /**
+     * Stops the clock of the score, the tip and any solve when the panel leaves its window
+     */
+    public void removeNotify() {
+        clock.stop();
+        if (statsClock != null) {
+            statsClock.stop();
+        }
+        animator.finish();
+        overlay.stop();
+        if (solver != null) {
+            solver.cancel();
+        }
+        super.removeNotify();
+    }
+    /**
+     * Draws a frame three pixels thick around an area of the hint
+     * @param graphic the graphics context to draw on
+     * @param area the area
+     */
+    private static void drawHintFrame(Graphics graphic, Rectangle area) {
+        for (int i = 1; i <= 3; i++) {
+            graphic.drawRoundRect(area.x - i, area.y - i, area.width + 2 * i, area.height + 2 * i, 10, 10);
+        }
+    }
+    /**
+     * Returns the image of the table, drawing it again only if a pile or the deck changed since
+     * the last time, the panel was resized or the card images were decoded or scaled. The image
+     * has the resolution of the screen, one pixel per device pixel.
+     * @return the image of everything but the cards being dragged
+     */
+    private BufferedImage getBackgroundImage() {
+        int width = layout.toPixels(Math.max(1, getWidth()));
+        int height = layout.toPixels(Math.max(1, getHeight()));
+        long version = deck.getModCount() + deckPile.getModCount() + animator.getModCount();
+        for (int i = 0; i < mainPiles.length; i++) {
+            version += mainPiles[i].getModCount();
+        }
+        for (int i = 0; i < suitPiles.length; i++) {
+            version += suitPiles[i].getModCount();
+        }
+        boolean loaded = CardImages.isLoaded();
+        if (background == null || background.getWidth() != width || background.getHeight() != height) {
+            GraphicsConfiguration configuration = getGraphicsConfiguration();
+            background = configuration != null ? configuration.createCompatibleImage(width, height)
+                    : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        } else if (version == backgroundVersion && loaded == backgroundLoaded) {
+            return background;
+        }
+        Graphics2D graphic = background.createGraphics();
+        graphic.setColor(getBackground());
+        graphic.fillRect(0, 0, width, height);
+        if (layout.getScale() != 1) {
+            graphic.scale(layout.getScale(), layout.getScale());
+        }
         for (int i = 0; i < mainPiles.length; i++) {
             mainPiles[i].draw(graphic);
         }
@@ -99,11 +539,11 @@ public class GamePanel extends JPanel
         }
         deckPile.draw(graphic);
         deck.draw(graphic);
-
-        if (selectedPile != null) {
-            selectedPile.draw(graphic);
-        }
         razvan.draw(graphic);
+        graphic.dispose();
+        backgroundVersion = version;
+        backgroundLoaded = loaded;
+        return background;
     }
     /**
      * @return the deck of cards
@@ -112,22 +552,150 @@ public class GamePanel extends JPanel
         return deck;
     }
     /**
-     * Sets the location of all cards to their starting points
+     * Sets the location of all cards to their starting points, and deals them from the deck once
+     * the panel is shown
      */
     public void setInitialLayout(Deck deck) {
-        int cardNum = 0;
+        animator.finish();
+        drag.release();
+        dealPending = true;
+        for (int i = 0; i < deck.getSize(); i++) {
+            Card card = deck.getCardAt(i);
+            cards[CardCode.ordinal(card.getCode())] = card;
+        }
         for (int i = 0; i < mainPiles.length; i++) {
-            mainPiles[i] = new Pile(MAIN_PILE_X_LOCATIONS[i], MAIN_PILE_Y_LOCATION, Pile.MAIN_PILE);
-            for (int j = 0; j <= i; j++) {
-                mainPiles[i].addToPile(deck.getCardAt(cardNum));
-                if (j == i) deck.getCardAt(cardNum).faceDown = false;
-                deck.removeCardAt(cardNum);
-
+            mainPiles[i] = new Pile(layout.getMainPileX(i), layout.getMainPileY(), Pile.MAIN_PILE, layout);
+        }
+        for (int i = 0; i < suitPiles.length; i++) {
+            suitPiles[i] = new Pile(layout.getSuitPileX(i), layout.getSuitPileY(), Pile.SUIT_PILE, layout);
+        }
+        pileIndex.invalidate();
+        syncPiles();
+    }
+    /**
+     * Puts every card view on the pile where the game state has it, face up or face down
+     */
+    public void syncPiles() {
+        syncPiles(null);
+    }
+    /**
+     * Puts every card view on the pile where the game state has it, face up or face down. Only the
+     * piles whose cards differ from the state are rebuilt.
+     * @param dirty if not null, the old and new bounds of every rebuilt pile are added to it
+     */
+    public void syncPiles(Rectangle dirty) {
+        for (int i = 0; i < mainPiles.length; i++) {
+            Pile pile = mainPiles[i];
+            int size = state.getMainSize(i);
+            int faceDown = state.getMainFaceDown(i);
+            if (pileMatches(pile, size, faceDown, KlondikeState.MAIN_PILE_0 + i)) {
+                continue;
+            }
+            addBounds(pile, dirty);
+            pile.clear();
+            for (int j = 0; j < size; j++) {
+                pile.addToPile(cardView(state.getMainCard(i, j), j < faceDown));
+            }
+            addBounds(pile, dirty);
+        }
+        for (int i = 0; i < suitPiles.length; i++) {
+            Pile pile = suitPiles[i];
+            int top = state.getTopCode(KlondikeState.SUIT_PILE_0 + i);
+            if (pile.getSize() == state.getSuitSize(i) && pile.getCodeOnTop() == top) {
+                continue;
+            }
+            addBounds(pile, dirty);
+            pile.clear();
+            for (int face = 0; top != CardCode.NONE && face <= CardCode.face(top); face++) {
+                pile.addToPile(cardView(CardCode.encode(CardCode.suit(top), face), false));
+            }
+            addBounds(pile, dirty);
+        }
+        if (!pileMatches(deckPile, state.getWasteSize(), 0, KlondikeState.WASTE)) {
+            addBounds(deckPile, dirty);
+            deckPile.clear();
+            for (int j = 0; j < state.getWasteSize(); j++) {
+                deckPile.addToPile(cardView(state.getWasteCard(j), false));
+            }
+            addBounds(deckPile, dirty);
+        }
+        if (!deckMatches()) {
+            if (dirty != null) {
+                deck.addBoundsTo(dirty);
+            }
+            deck.clear();
+            for (int j = 0; j < state.getStockSize(); j++) {
+                deck.addToDeck(cardView(state.getStockCard(j), true));
+            }
+        }
+    }
+    /**
+     * Returns whether a main pile or the waste view shows exactly the cards of the state
+     * @param pile the view
+     * @param size the number of cards of the pile in the state
+     * @param faceDown the number of face down cards of the pile in the state
+     * @param pileId the KlondikeState pile number
+     * @return whether the view is up to date
+     */
+    private boolean pileMatches(Pile pile, int size, int faceDown, int pileId) {
+        if (pile.getSize() != size) {
+            return false;
+        }
+        for (int j = 0; j < size; j++) {
+            Card card = pile.getCardAt(j);
+            int code = pileId == KlondikeState.WASTE ? state.getWasteCard(j) : state.getMainCard(pileId, j);
+            if (card.getCode() != code || card.faceDown != (j < faceDown)) {
+                return false;
             }
         }
-        for (int i = 0; i < Card.SUITS.length; i++) {
-            suitPiles[i] = new Pile(SUIT_PILE_X_LOCATIONS[i], SUIT_PILE_Y_LOCATION, Pile.SUIT_PILE);
+        return true;
+    }
+    /**
+     * @return whether the deck view shows exactly the cards of the stock
+     */
+    private boolean deckMatches() {
+        if (deck.getSize() != state.getStockSize()) {
+            return false;
+        }
+        for (int j = 0; j < deck.getSize(); j++) {
+            if (deck.getCardAt(j).getCode() != state.getStockCard(j)) {
+                return false;
+            }
         }
+        return true;
+    }
+    /**
+     * Adds the bounds of a pile to a region
+     * @param pile the pile
+     * @param dirty the region, may be null
+     */
+    private static void addBounds(Pile pile, Rectangle dirty) {
+        if (dirty != null) {
+            pile.addBoundsTo(dirty);
+        }
+    }
+    /**
+     * Returns the view of a card turned the way it should be drawn
+     * @param code the card code
+     * @param faceDown whether the card is face down
+     * @return the view of the card
+     */
+    private Card cardView(int code, boolean faceDown) {
+        Card card = cards[CardCode.ordinal(code)];
+        card.faceDown = faceDown;
+        return card;
+    }
+    /**
+     * @return the deal being played
+     */
+    public KlondikeDeal getDeal() {
+        return deal;
+    }
+    /**
+     * @return the state of the game
+     */
+    public KlondikeState getState() {
+        return state;
     }
     /**
      * @return the mainPiles array
@@ -148,90 +716,290 @@ public class GamePanel extends JPanel
     public Pile getDeckPile() {
         return deckPile;
     }
+    /**
+     * @return the cards being dragged
+     */
+    public DragSlice getDrag() {
+        return drag;
+    }
+    /**
+     * @return the animator of the cards
+     */
+    public CardAnimator getAnimator() {
+        return animator;
+    }
+    /**
+     * @return the index of the piles by location
+     */
+    public PileIndex getPileIndex() {
+        return pileIndex;
+    }
+    /**
+     * @return the moves played in this game
+     */
+    public MoveLog getMoveLog() {
+        return moveLog;
+    }
+    /**
+     * Applies a move to the game state and records it, if it is legal. The piles are not synced.
+     * @param move the packed move
+     * @return whether the move was legal
+     */
+    public boolean applyMove(int move) {
+        if (!state.isLegal(move)) {
+            return false;
+        }
+        moveLog.record(state.apply(move));
+        moveChanged(move);
+        if (recording != null) {
+            recording.recordMove(move, getElapsedMillis());
+        }
+        autosave();
+        return true;
+    }
+    /**
+     * Applies a move if it is legal and repaints the piles it changed
+     * @param move the packed move
+     * @return whether the move was legal
+     */
+    public boolean playMove(int move) {
+        if (!applyMove(move)) {
+            return false;
+        }
+        repaintChangedPiles();
+        return true;
+    }
+    /**
+     * Takes the last move back and repaints what changed
+     * @return whether there was a move to undo
+     */
+    public boolean undo() {
+        drag.release();
+        if (!moveLog.undo(state)) {
+            return false;
+        }
+        moveChanged(moveLog.getMove(moveLog.getCursor()));
+        if (recording != null) {
+            recording.recordUndo(moveLog.getMove(moveLog.getCursor()), getElapsedMillis());
+        }
+        autosave();
+        repaintChangedPiles();
+        return true;
+    }
+    /**
+     * Plays the last move undone again and repaints what changed
+     * @return whether there was a move to redo
+     */
+    public boolean redo() {
+        drag.release();
+        if (!moveLog.redo(state)) {
+            return false;
+        }
+        moveChanged(moveLog.getMove(moveLog.getCursor() - 1));
+        if (recording != null) {
+            recording.recordMove(moveLog.getMove(moveLog.getCursor() - 1), getElapsedMillis());
+        }
+        autosave();
+        repaintChangedPiles();
+        return true;
+    }
+    /**
+     * Shows a position of a replay. The moves played from it are neither recorded nor undoable
+     * before it. Shown before the panel is, the position replaces the deal.
+     * @param position the position to show
+     */
+    public void showPosition(KlondikeState position) {
+        dealPending = false;
+        drag.release();
+        state.copyFrom(position);
+        moveLog.clear();
+        recording = null;
+        moveTracker.reset();
+        hideHint();
+        overlay.update();
+        repaintChangedPiles();
+    }
+    /**
+     * Updates what depends on the state after a move was applied or undone
+     * @param move the move
+     */
+    private void moveChanged(int move) {
+        moveTracker.update(move);
+        hideHint();
+        overlay.update();
+    }
+    /**
+     * Highlights a legal move worth playing, see MoveTracker.hint, until the next move
+     * @return the move shown, or -1 if no move is legal
+     */
+    public int showHint() {
+        hideHint();
+        int move = moveTracker.hint();
+        if (move < 0) {
+            return -1;
+        }
+        hintMove = move;
+        setHintArea(Move.from(move), Move.count(move), hintSource);
+        setHintArea(Move.to(move), 1, hintTarget);
+        repaintHint();
+        return move;
+    }
+    /**
+     * Removes the highlight of the hint, if one is shown
+     */
+    public void hideHint() {
+        if (hintMove >= 0) {
+            repaintHint();
+            hintMove = -1;
+        }
+    }
+    /**
+     * Repaints the frames of the hint
+     */
+    private void repaintHint() {
+        repaint(hintSource.x - 4, hintSource.y - 4, hintSource.width + 8, hintSource.height + 8);
+        repaint(hintTarget.x - 4, hintTarget.y - 4, hintTarget.width + 8, hintTarget.height + 8);
+    }
+    /**
+     * Sets an area to the top cards of a pile, or to the place of the pile if it is empty
+     * @param pileId the KlondikeState pile number
+     * @param count the number of cards from the top
+     * @param area the area to set
+     */
+    private void setHintArea(int pileId, int count, Rectangle area) {
+        if (pileId == KlondikeState.STOCK) {
+            area.setBounds(deck.getX(), deck.getY(), layout.getCardWidth(), layout.getCardHeight());
+            return;
+        }
+        Pile pile = pileIndex.getPile(pileId);
+        if (pile.isEmpty()) {
+            area.setBounds(pile.getXlocation(), pile.getYlocation(), layout.getCardWidth(), layout.getCardHeight());
+            return;
+        }
+        Card card = pile.getCardAt(pile.getSize() - count);
+        area.setBounds(card.getcornerX(), card.getcornerY(), layout.getCardWidth(),
+                layout.getCardHeight() + (count - 1) * layout.getFanSpace());
+    }
+    /**
+     * @return the legal moves of the game
+     */
+    public MoveTracker getMoveTracker() {
+        return moveTracker;
+    }
+    /**
+     * @return the recording of the game, or null if the panel shows a replay
+     */
+    public GameRecording getRecording() {
+        return recording;
+    }
+    /**
+     * Saves the game after every move from now on, and right away
+     * @param autosave where to save the game, or null to stop saving it
+     */
+    public void setAutosave(Autosave autosave) {
+        this.autosave = autosave;
+        autosave();
+    }
+    /**
+     * Saves the game if it has an autosave, or deletes the save once the game is won
+     */
+    private void autosave() {
+        if (autosave == null) {
+            return;
+        }
+        if (state.isWon()) {
+            autosave.delete();
+        } else {
+            autosave.save(save());
+        }
+    }
+    /**
+     * @return the game in its saved form, see SavedGame
+     */
+    public byte[] save() {
+        long elapsedMillis = getElapsedMillis();
+        return SavedGame.encode(deal, state, moveLog, scoreAt(elapsedMillis), elapsedMillis);
+    }
+    /**
+     * @return the time played, in milliseconds, including the time before the game was resumed
+     */
+    public long getElapsedMillis() {
+        return elapsedBeforeMillis + (System.nanoTime() - startNanos) / 1000000;
+    }
+    /**
+     * Syncs the piles from the game state and repaints the piles that changed
+     */
+    private void repaintChangedPiles() {
+        Rectangle dirty = new Rectangle(0, 0, -1, -1);
+        animateSync(dirty);
+        if (!dirty.isEmpty()) {
+            repaint(dirty);
+        }
+    }
+    /**
+     * Ends the drag, if any, and syncs the piles from the game state, moving the cards whose
+     * place changed there from where they were seen, dragged or still in flight
+     * @param dirty if not null, the old and new bounds of every rebuilt pile are added to it
+     */
+    public void animateSync(Rectangle dirty) {
+        animator.capture();
+        drag.release();
+        syncPiles(dirty);
+        animator.animateChanges();
+    }
     /**
      * check if the suit piles are full of cards
      */
     public boolean checkForWin()
     {
-        for(int i=0;i< suitPiles.length;i++)
-        {
-            if(suitPiles[i].getSize()<13)
-            {
-                return false;
-            }
-        }
-        return true;
+        return state.isWon();
     }
     /**
      * initializes the score box
-     * @param argument the level selected
      */
-    public void makeScoreBox(String argument) {
+    private void makeScoreBox() {
         scoreBox.setEditable(false);
         scoreBox.setOpaque(false);
         this.add(scoreBox);
-        if (argument.equals("level1")) {
-            runScoreLevel1();
-        }
-        if(argument.equals("level2"))
-        {
-            runScoreLevel2();
-        }
     }
     /**
-     * @return the score
+     * @return the score, which follows from the time played: it goes down by one every score period
      */
     public int getScore()
     {
-        return score;
+        return scoreAt(getElapsedMillis());
     }
     /**
-     * runs the score if the level 1 is selected
+     * @param elapsedMillis a time played
+     * @return the score after that time
      */
-    public void runScoreLevel1()
+    private int scoreAt(long elapsedMillis)
     {
-        Timer timer = new Timer(4000,new ActionListener() {
-            public void actionPerformed(ActionEvent e) {
-                setScore();
-            }
-        });
-        if(score!=0)
-        {
-            timer.start();
-        }
-        else
-        {
-            timer.stop();
-        }
+        return (int) Math.max(0, INITIAL_SCORE - elapsedMillis / scorePeriodMillis);
     }
     /**
-     * runs the score if the level 2 is selected
+     * Shows the score if it changed since it was last shown
      */
-    public void runScoreLevel2()
+    private void showScore()
     {
-        Timer timer = new Timer(2000, new ActionListener() {
-            public void actionPerformed(ActionEvent e) {
-                setScore();
-            }
-        });
-        if(score!=0)
+        int score = getScore();
+        if (score != shownScore)
         {
-            timer.start();
-        }
-        else
-        {
-            timer.stop();
+            shownScore = score;
+            scoreBox.setText("Score: " + score);
+            overlay.update();
         }
     }
     /**
-     * modifies the score and the text in a scoreBox
+     * Shows the score and sleeps until it goes down again, or for good once it reaches 0
      */
-    public void setScore()
+    private void tick()
     {
-        score-=1;
-        String newScore = "Score: " + (score);
-        scoreBox.setText(newScore);
-        scoreBox.repaint();
+        showScore();
+        if (shownScore > 0)
+        {
+            clock.setInitialDelay((int) (scorePeriodMillis - getElapsedMillis() % scorePeriodMillis));
+            clock.restart();
+        }
     }
-
 }
@@ -0,0 +1,320 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+public final class GameRecording
+{
+    /**
+     * GameRecording.java
+     * Everything that happened in a game, to replay it later (see GameReplayer). A recording is
+     * the deal followed by a stream of events, each encoded as two varints: the milliseconds since
+     * the previous event and the event itself, a played move shifted left by one, or for an undo
+     * the move as it was applied (with Move.FLIP) shifted left by one plus one. An undo carries the
+     * move it takes back, so every event can be replayed on its own, and an event takes three to
+     * five bytes.
+     *
+     * Every checkpointInterval events the position is kept as a checkpoint, so a replay can seek
+     * to any event by replaying at most checkpointInterval - 1 events from the checkpoint before it.
+     *
+     * The file starts with the magic "KLR1", a version byte, the level, the deal number, the
+     * checkpoint interval, the number of events and the length of the event stream in bytes,
+     * followed by the event stream and the checkpoints (byte offset in the stream, time and
+     * position as written by KlondikeState.writeTo). It ends with the CRC-32 of everything before
+     * it. This class does not depend on AWT or Swing.
+     */
+    public static final int MAGIC = 0x4B4C5231;
+    public static final int VERSION = 1;
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 64;
+    /**
+     * Low bit of an event that takes a move back
+     */
+    static final int UNDO = 1;
+
+    /**
+     * A position of the game every checkpointInterval events
+     */
+    static final class Checkpoint
+    {
+        final KlondikeState state;
+        /**
+         * Offset in the event stream of the first event after the checkpoint
+         */
+        final int offset;
+        /**
+         * Time of the last event before the checkpoint
+         */
+        final long millis;
+
+        Checkpoint(KlondikeState state, int offset, long millis)
+        {
+            this.state = state;
+            this.offset = offset;
+            this.millis = millis;
+        }
+    }
+
+    private final KlondikeDeal deal;
+    private final int checkpointInterval;
+    private byte[] events = new byte[256];
+    private int length;
+    private int eventCount;
+    private long lastMillis;
+    private final List<Checkpoint> checkpoints = new ArrayList<Checkpoint>();
+    /**
+     * The position after the last event, kept to take the checkpoints
+     */
+    private final KlondikeState tip;
+
+    /**
+     * Starts the recording of a deal with the default checkpoint interval
+     * @param deal the deal
+     */
+    public GameRecording(KlondikeDeal deal)
+    {
+        this(deal, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+    /**
+     * Starts the recording of a deal
+     * @param deal the deal
+     * @param checkpointInterval the number of events between two checkpoints
+     */
+    public GameRecording(KlondikeDeal deal, int checkpointInterval)
+    {
+        if (checkpointInterval < 1)
+        {
+            throw new IllegalArgumentException("The checkpoint interval must be positive");
+        }
+        this.deal = deal;
+        this.checkpointInterval = checkpointInterval;
+        tip = new KlondikeState(deal);
+        checkpoints.add(new Checkpoint(new KlondikeState(tip), 0, 0));
+    }
+    /**
+     * Records a move
+     * @param move the move played, which must be legal after the events recorded so far
+     * @param millis the time of the move since the start of the game
+     * @throws IllegalArgumentException if the move is not legal
+     */
+    public void recordMove(int move, long millis)
+    {
+        move &= Move.MOVE_MASK;
+        tip.apply(move);
+        append(move << 1, millis);
+    }
+    /**
+     * Records that the last move played was taken back
+     * @param applied the move as it was applied, with Move.FLIP if it turned a card up
+     * @param millis the time of the undo since the start of the game
+     */
+    public void recordUndo(int applied, long millis)
+    {
+        tip.undo(applied);
+        append((applied << 1) | UNDO, millis);
+    }
+    /**
+     * Appends an event to the stream and takes a checkpoint when one is due
+     * @param code the event
+     * @param millis the time of the event
+     */
+    private void append(int code, long millis)
+    {
+        if (length + 2 * 10 > events.length)
+        {
+            events = Arrays.copyOf(events, events.length * 2);
+        }
+        long delta = Math.max(0, millis - lastMillis);
+        length = writeVarint(events, length, delta);
+        length = writeVarint(events, length, code);
+        lastMillis += delta;
+        eventCount++;
+        if (eventCount % checkpointInterval == 0)
+        {
+            checkpoints.add(new Checkpoint(new KlondikeState(tip), length, lastMillis));
+        }
+    }
+    /**
+     * Writes a non negative number in 7 bit groups, least significant first, the high bit of every
+     * byte but the last one set
+     * @param buffer the buffer to write to
+     * @param offset where to write
+     * @param value the number
+     * @return the offset after the number
+     */
+    static int writeVarint(byte[] buffer, int offset, long value)
+    {
+        while ((value & ~0x7FL) != 0)
+        {
+            buffer[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[offset++] = (byte) value;
+        return offset;
+    }
+    /**
+     * @return the deal of the game
+     */
+    public KlondikeDeal getDeal()
+    {
+        return deal;
+    }
+    /**
+     * @return the number of events recorded
+     */
+    public int getEventCount()
+    {
+        return eventCount;
+    }
+    /**
+     * @return the number of events between two checkpoints
+     */
+    public int getCheckpointInterval()
+    {
+        return checkpointInterval;
+    }
+    /**
+     * @return the size of the event stream in bytes
+     */
+    public int getLength()
+    {
+        return length;
+    }
+    /**
+     * @return the event stream; only the first getLength bytes are used
+     */
+    byte[] getEvents()
+    {
+        return events;
+    }
+    /**
+     * @param index the index of the checkpoint, the one before event index * checkpointInterval
+     * @return the checkpoint
+     */
+    Checkpoint getCheckpoint(int index)
+    {
+        return checkpoints.get(index);
+    }
+    /**
+     * Writes the recording to a file
+     * @param file the file
+     */
+    public void write(File file) throws IOException
+    {
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)), crc)))
+        {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeUTF(deal.getLevel());
+            out.writeLong(deal.getDealNumber());
+            out.writeInt(checkpointInterval);
+            out.writeInt(eventCount);
+            out.writeInt(length);
+            out.write(events, 0, length);
+            for (int i = 1; i < checkpoints.size(); i++)
+            {
+                Checkpoint checkpoint = checkpoints.get(i);
+                out.writeInt(checkpoint.offset);
+                out.writeLong(checkpoint.millis);
+                checkpoint.state.writeTo(out);
+            }
+            out.writeInt((int) crc.getValue());
+        }
+    }
+    /**
+     * Reads a recording from a file and checks it by replaying every event
+     * @param file the file
+     * @return the recording
+     * @throws IOException if the file can not be read or is not a valid recording
+     */
+    public static GameRecording read(File file) throws IOException
+    {
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(new FileInputStream(file)), crc)))
+        {
+            if (in.readInt() != MAGIC)
+            {
+                throw new IOException("Not a recording");
+            }
+            int version = in.readUnsignedByte();
+            if (version != VERSION)
+            {
+                throw new IOException("Unsupported recording version " + version);
+            }
+            String level = in.readUTF();
+            if (!level.equals("level1") && !level.equals("level2"))
+            {
+                throw new IOException("Unknown level " + level);
+            }
+            KlondikeDeal deal = KlondikeDeal.fromNumber(level, in.readLong());
+            int interval = in.readInt();
+            int count = in.readInt();
+            int length = in.readInt();
+            // in long, as a corrupt count times the event size can overflow an int
+            if (interval < 1 || count < 0 || length < (long) count * 2 || length > (long) count * 2 * 10
+                    || length > Integer.MAX_VALUE - 2 * 10)
+            {
+                throw new IOException("Invalid recording header");
+            }
+            GameRecording recording = new GameRecording(deal, interval);
+            recording.events = new byte[length + 2 * 10];
+            in.readFully(recording.events, 0, length);
+            recording.length = length;
+            recording.eventCount = count;
+            for (int i = 0; i < count / interval; i++)
+            {
+                int offset = in.readInt();
+                long millis = in.readLong();
+                KlondikeState state = new KlondikeState(deal);
+                state.readFrom(in);
+                if (offset < 0 || offset > length || millis < 0)
+                {
+                    throw new IOException("Invalid checkpoint " + i);
+                }
+                recording.checkpoints.add(new Checkpoint(state, offset, millis));
+            }
+            int checksum = (int) crc.getValue();
+            if (in.readInt() != checksum)
+            {
+                throw new IOException("Corrupt recording");
+            }
+            if (in.read() != -1)
+            {
+                throw new IOException("Unexpected data after the recording");
+            }
+            try
+            {
+                GameReplayer replayer = new GameReplayer(recording);
+                replayer.replayAll();
+                if (replayer.getOffset() != length)
+                {
+                    throw new IOException("The events do not fill the recording");
+                }
+                recording.tip.copyFrom(replayer.getState());
+                recording.lastMillis = replayer.getTimeMillis();
+            }
+            catch (RuntimeException e)
+            {
+                throw new IOException("Invalid recording: " + e.getMessage(), e);
+            }
+            return recording;
+        }
+        catch (EOFException e)
+        {
+            throw new IOException("Truncated recording", e);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+import java.io.File;
+import java.io.IOException;
+
+public final class GameReplayer
+{
+    /**
+     * GameReplayer.java
+     * Plays a GameRecording back on a KlondikeState, one event at a time or by seeking to any
+     * event. Seeking starts from the checkpoint before the event, or from where the replay is if
+     * that is closer, so it never replays more than the checkpoint interval of the recording.
+     *
+     * Every event is checked as it is replayed: a move must be legal, an undo must take back a move
+     * that could have been played, and the position must match every checkpoint passed. Replaying
+     * allocates nothing and does not depend on AWT or Swing, so it runs headless at millions of
+     * events per second.
+     */
+    private final GameRecording recording;
+    private final KlondikeState state;
+    /**
+     * Number of events replayed, the index of the next one
+     */
+    private int eventIndex;
+    /**
+     * Offset of the next event in the event stream
+     */
+    private int offset;
+    private long millis;
+
+    /**
+     * Constructs a replayer at the start of a recording
+     * @param recording the recording to play back
+     */
+    public GameReplayer(GameRecording recording)
+    {
+        this.recording = recording;
+        state = new KlondikeState(recording.getDeal());
+    }
+    /**
+     * Checks recordings from the command line: reads and replays every file and prints the
+     * number of events, whether the game was won and how fast the events replay
+     * @param args the recording files
+     */
+    public static void main(String[] args)
+    {
+        if (args.length == 0)
+        {
+            System.out.println("Usage: --check-recordings <file>...");
+            return;
+        }
+        for (String path : args)
+        {
+            GameRecording recording;
+            try
+            {
+                recording = GameRecording.read(new File(path));
+            }
+            catch (IOException e)
+            {
+                System.out.println(path + ": invalid, " + e.getMessage());
+                continue;
+            }
+            GameReplayer replayer = new GameReplayer(recording);
+            long events = 0;
+            long start = System.nanoTime();
+            do
+            {
+                events += replayer.replayAll();
+            }
+            while (events < 1000000 && recording.getEventCount() > 0);
+            long nanos = Math.max(1, System.nanoTime() - start);
+            System.out.println(path + ": " + recording.getEventCount() + " events in "
+                    + replayer.getTimeMillis() / 1000 + " s, " + (replayer.getState().isWon() ? "won" : "not won")
+                    + ", replayed at " + events * 1000000000L / nanos + " events/s");
+        }
+    }
+    /**
+     * Replays the next event
+     * @return whether there was an event to replay
+     * @throws IllegalStateException if the event is not valid in the position reached
+     */
+    public boolean step()
+    {
+        if (eventIndex == recording.getEventCount())
+        {
+            return false;
+        }
+        byte[] events = recording.getEvents();
+        long delta = 0;
+        int shift = 0;
+        int b;
+        do
+        {
+            b = events[offset++];
+            delta |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while (b < 0 && shift < 64);
+        int code = 0;
+        shift = 0;
+        do
+        {
+            b = events[offset++];
+            code |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while (b < 0 && shift < 21);
+        if (b < 0 || code > ((Move.MOVE_MASK | Move.FLIP) << 1 | GameRecording.UNDO))
+        {
+            throw new IllegalStateException("Invalid event " + eventIndex);
+        }
+        int move = (code >>> 1) & Move.MOVE_MASK;
+        if ((code & GameRecording.UNDO) == 0)
+        {
+            if (!state.isLegal(move))
+            {
+                throw new IllegalStateException("Illegal move " + Move.toString(move) + " at event " + eventIndex);
+            }
+            state.applyLegal(move);
+        }
+        else
+        {
+            int applied = code >>> 1;
+            long before = state.getHash();
+            state.undo(applied);
+            if (!state.isLegal(move) || state.applyLegal(move) != applied || state.getHash() != before)
+            {
+                throw new IllegalStateException("Invalid undo of " + Move.toString(move) + " at event " + eventIndex);
+            }
+            state.undo(applied);
+        }
+        millis += delta;
+        eventIndex++;
+        int interval = recording.getCheckpointInterval();
+        if (eventIndex % interval == 0)
+        {
+            GameRecording.Checkpoint checkpoint = recording.getCheckpoint(eventIndex / interval);
+            if (checkpoint.state.getHash() != state.getHash() || checkpoint.offset != offset || checkpoint.millis != millis)
+            {
+                throw new IllegalStateException("The position does not match the checkpoint at event " + eventIndex);
+            }
+        }
+        return true;
+    }
+    /**
+     * Moves the replay to the position after a number of events
+     * @param index the number of events to replay from the start of the recording
+     * @throws IllegalStateException if an event on the way is not valid
+     */
+    public void seek(int index)
+    {
+        if (index < 0 || index > recording.getEventCount())
+        {
+            throw new IndexOutOfBoundsException("No event " + index + " in a recording of " + recording.getEventCount());
+        }
+        int interval = recording.getCheckpointInterval();
+        int checkpoint = index / interval;
+        if (index < eventIndex || checkpoint * interval > eventIndex)
+        {
+            GameRecording.Checkpoint nearest = recording.getCheckpoint(checkpoint);
+            state.copyFrom(nearest.state);
+            eventIndex = checkpoint * interval;
+            offset = nearest.offset;
+            millis = nearest.millis;
+        }
+        while (eventIndex < index)
+        {
+            step();
+        }
+    }
+    /**
+     * Replays the whole recording from the start
+     * @return the number of events replayed
+     */
+    public int replayAll()
+    {
+        seek(0);
+        while (step())
+        {
+        }
+        return eventIndex;
+    }
+    /**
+     * @return the position reached; it changes as the replay moves
+     */
+    public KlondikeState getState()
+    {
+        return state;
+    }
+    /**
+     * @return the number of events replayed
+     */
+    public int getEventIndex()
+    {
+        return eventIndex;
+    }
+    /**
+     * @return the offset of the next event in the event stream
+     */
+    int getOffset()
+    {
+        return offset;
+    }
+    /**
+     * @return the time of the last event replayed since the start of the game, in milliseconds
+     */
+    public long getTimeMillis()
+    {
+        return millis;
+    }
+    /**
+     * @return the recording played back
+     */
+    public GameRecording getRecording()
+    {
+        return recording;
+    }
+}
@@ -0,0 +1,804 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class GameServer
+{
+    /**
+     * GameServer.java
+     * Hosts many headless games from one JVM, for a tournament backend: every table is a
+     * KlondikeState with its MoveLog, about a kilobyte, driven by a line protocol over TCP on the
+     * loopback interface. Every request is one line of ASCII words and gets one line back, which
+     * starts with OK or with ERR and a reason:
+     *
+     *   NEW level1|level2 [deal]    OK table deal         new table, of a random deal if none is given
+     *   PLAY table from to count    OK cardsOnSuitPiles   moves cards between KlondikeState piles
+     *   DRAW table                  OK cardsOnSuitPiles   draws a card, or recycles an empty stock
+     *   UNDO table                  OK cardsOnSuitPiles   takes the last move back
+     *   MOVES table                 OK n from to count... the legal moves
+     *   STATE table                 OK hex                the position as KlondikeState.writeTo, in hex
+     *   CLOSE table                 OK                    frees the table
+     *   QUIT                        OK                    closes the connection and its tables
+     *
+     * A connection can open any number of tables; their numbers are its own and the tables are
+     * freed when it closes. The won game is the one with 52 cards on the suit piles.
+     *
+     * The connections are spread over a few event loops, one thread and one Selector each, that
+     * own their connections and tables, so nothing is shared or locked. A move takes a few hundred
+     * nanoseconds and allocates nothing, and a connection is served at most one buffer of requests
+     * per turn, so a busy client cannot hold back the others: the latency of a move stays bounded
+     * by the number of connections ready at once, not by the number of tables. A client that does
+     * not read its replies is not read either once MAX_PENDING_OUTPUT bytes wait for it.
+     */
+    public static final int DEFAULT_PORT = 7352;
+    /**
+     * Size of the read buffer of a connection, which is also the longest request line
+     */
+    private static final int BUFFER_SIZE = 4096;
+    /**
+     * Replies waiting to be sent beyond which a connection is no longer read
+     */
+    private static final int MAX_PENDING_OUTPUT = 64 * 1024;
+    /**
+     * Most tables a connection can open
+     */
+    public static final int MAX_TABLES_PER_CONNECTION = 1 << 16;
+
+    private static final byte[] OK = ascii("OK");
+    private static final byte[] ERR = ascii("ERR ");
+    private static final byte[] NEW = ascii("NEW");
+    private static final byte[] PLAY = ascii("PLAY");
+    private static final byte[] DRAW = ascii("DRAW");
+    private static final byte[] UNDO = ascii("UNDO");
+    private static final byte[] MOVES = ascii("MOVES");
+    private static final byte[] STATE = ascii("STATE");
+    private static final byte[] CLOSE = ascii("CLOSE");
+    private static final byte[] QUIT = ascii("QUIT");
+    private static final byte[] HEX = ascii("0123456789abcdef");
+
+    private final ServerSocketChannel server;
+    private final EventLoop[] loops;
+    private final Thread acceptor;
+    /**
+     * Number of tables open on all the connections
+     */
+    private final AtomicInteger tableCount = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * Opens a server on the loopback interface; it accepts connections once started
+     * @param port the port, or 0 for any free port
+     * @param threads the number of event loops
+     */
+    public GameServer(int port, int threads) throws IOException
+    {
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        loops = new EventLoop[Math.max(1, threads)];
+        for (int i = 0; i < loops.length; i++)
+        {
+            loops[i] = new EventLoop("GameServer-" + (i + 1));
+        }
+        acceptor = new Thread(new Runnable() {
+            public void run() {
+                accept();
+            }
+        }, "GameServer-accept");
+    }
+    /**
+     * Starts the event loops and accepting connections
+     */
+    public void start()
+    {
+        for (EventLoop loop : loops)
+        {
+            loop.thread.start();
+        }
+        acceptor.start();
+    }
+    /**
+     * Stops accepting connections and closes every connection, freeing the tables
+     */
+    public void close() throws IOException
+    {
+        closed = true;
+        server.close();
+        for (EventLoop loop : loops)
+        {
+            loop.selector.wakeup();
+        }
+    }
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort()
+    {
+        return server.socket().getLocalPort();
+    }
+    /**
+     * @return the number of tables open
+     */
+    public int getTableCount()
+    {
+        return tableCount.get();
+    }
+    /**
+     * Accepts connections and hands them to the event loops in turn, until the server is closed
+     */
+    private void accept()
+    {
+        int next = 0;
+        while (server.isOpen())
+        {
+            try
+            {
+                SocketChannel channel = server.accept();
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                EventLoop loop = loops[next++ % loops.length];
+                loop.pending.add(channel);
+                loop.selector.wakeup();
+            }
+            catch (ClosedChannelException e)
+            {
+                return;
+            }
+            catch (IOException e)
+            {
+                System.out.println("Error accepting a connection: " + e.getMessage());
+            }
+        }
+    }
+    /**
+     * Runs a server from the command line until the JVM is stopped
+     * @param args optionally the port and the number of event loops
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        GameServer gameServer = new GameServer(port, threads);
+        gameServer.start();
+        System.out.println("Game server listening on " + InetAddress.getLoopbackAddress().getHostAddress()
+                + ":" + gameServer.getPort() + " with " + threads + " event loops");
+    }
+    /**
+     * @param text ASCII text
+     * @return its bytes
+     */
+    private static byte[] ascii(String text)
+    {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * A game played on the server
+     */
+    private static final class Table
+    {
+        private final KlondikeState state;
+        private final MoveLog moveLog = new MoveLog();
+
+        Table(KlondikeDeal deal)
+        {
+            state = new KlondikeState(deal);
+        }
+    }
+
+    /**
+     * A client connection, with its buffers and its tables, used only by the thread of its loop
+     */
+    private static final class Connection
+    {
+        private final SocketChannel channel;
+        private final ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+        private ByteBuffer output = ByteBuffer.allocate(BUFFER_SIZE);
+        /**
+         * The tables by number; a closed table leaves a null that the next NEW reuses
+         */
+        private Table[] tables = new Table[4];
+        private int tableCount;
+        /**
+         * Every table number below it is taken
+         */
+        private int firstFree;
+        /**
+         * Whether the connection closes once its replies are sent
+         */
+        private boolean quitting;
+        /**
+         * Whether the input is dropped up to the end of a line that was too long
+         */
+        private boolean skipping;
+
+        Connection(SocketChannel channel)
+        {
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * A thread with a Selector, serving its own connections
+     */
+    private final class EventLoop implements Runnable
+    {
+        private final Selector selector;
+        private final Thread thread;
+        /**
+         * The connections accepted for this loop and not registered yet
+         */
+        private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<SocketChannel>();
+        /**
+         * The legal moves of a position, reused by every MOVES request
+         */
+        private final int[] moves = new int[KlondikeState.MAX_MOVES];
+        /**
+         * The position written by a STATE request, reused by every one
+         */
+        private final ByteArrayOutputStream saved = new ByteArrayOutputStream(128);
+        private final DataOutputStream savedOutput = new DataOutputStream(saved);
+        /**
+         * The request being parsed: its bytes in the input buffer and the next one to read
+         */
+        private byte[] line;
+        private int position, end;
+
+        EventLoop(String name) throws IOException
+        {
+            selector = Selector.open();
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+        }
+        public void run()
+        {
+            try
+            {
+                while (!closed)
+                {
+                    selector.select();
+                    registerPending();
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext())
+                    {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        serve(key);
+                    }
+                }
+            }
+            catch (IOException e)
+            {
+                System.out.println("Error in " + thread.getName() + ": " + e.getMessage());
+            }
+            finally
+            {
+                closeAll();
+            }
+        }
+        /**
+         * Registers the connections accepted since the last turn
+         */
+        private void registerPending() throws IOException
+        {
+            SocketChannel channel;
+            while ((channel = pending.poll()) != null)
+            {
+                channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+            }
+        }
+        /**
+         * Reads the requests of a ready connection, answers them and sends the replies
+         * @param key the key of the connection
+         */
+        private void serve(SelectionKey key)
+        {
+            Connection connection = (Connection) key.attachment();
+            try
+            {
+                if (key.isReadable() && !connection.quitting)
+                {
+                    if (connection.channel.read(connection.input) < 0)
+                    {
+                        close(key);
+                        return;
+                    }
+                    handleLines(connection);
+                }
+                connection.output.flip();
+                connection.channel.write(connection.output);
+                connection.output.compact();
+                if (connection.output.position() == 0 && connection.quitting)
+                {
+                    close(key);
+                    return;
+                }
+                int interest = connection.output.position() < MAX_PENDING_OUTPUT && !connection.quitting ? SelectionKey.OP_READ : 0;
+                key.interestOps(interest | (connection.output.position() > 0 ? SelectionKey.OP_WRITE : 0));
+            }
+            catch (IOException e)
+            {
+                close(key);
+            }
+        }
+        /**
+         * Answers every complete line of the input buffer and keeps the rest for the next read
+         * @param connection the connection
+         */
+        private void handleLines(Connection connection)
+        {
+            ByteBuffer input = connection.input;
+            byte[] bytes = input.array();
+            int start = 0;
+            for (int i = 0; i < input.position(); i++)
+            {
+                if (bytes[i] == '\n' && !connection.quitting)
+                {
+                    if (connection.skipping)
+                    {
+                        connection.skipping = false;
+                    }
+                    else
+                    {
+                        handle(connection, bytes, start, i > start && bytes[i - 1] == '\r' ? i - 1 : i);
+                    }
+                    start = i + 1;
+                }
+            }
+            if (start == 0 && !input.hasRemaining())
+            {
+                // the rest of the line is dropped as it comes
+                if (!connection.skipping)
+                {
+                    reply(connection, "line too long");
+                    connection.skipping = true;
+                }
+                input.clear();
+                return;
+            }
+            input.limit(input.position());
+            input.position(start);
+            input.compact();
+        }
+        /**
+         * Answers a request
+         * @param connection the connection it came from
+         * @param bytes the buffer holding it
+         * @param start the index of its first byte
+         * @param end the index after its last byte, without the line separator
+         */
+        private void handle(Connection connection, byte[] bytes, int start, int end)
+        {
+            line = bytes;
+            position = start;
+            this.end = end;
+            try
+            {
+                if (word(NEW))
+                {
+                    newTable(connection);
+                }
+                else if (word(PLAY))
+                {
+                    Table table = table(connection);
+                    int from = pile();
+                    int to = pile();
+                    // a larger count would spill into Move.FLIP and be taken for a move that turned a card up
+                    int count = (int) number(Move.MAX_COUNT);
+                    play(connection, table, Move.make(from, to, count));
+                }
+                else if (word(DRAW))
+                {
+                    Table table = table(connection);
+                    KlondikeState state = table.state;
+                    play(connection, table, state.getStockSize() == 0 ? Move.recycle(state.getWasteSize()) : Move.draw());
+                }
+                else if (word(UNDO))
+                {
+                    Table table = table(connection);
+                    finish();
+                    if (!table.moveLog.undo(table.state))
+                    {
+                        reply(connection, "nothing to undo");
+                        return;
+                    }
+                    replyNumber(connection, table.state.getCardsOnSuitPiles());
+                }
+                else if (word(MOVES))
+                {
+                    Table table = table(connection);
+                    finish();
+                    int count = table.state.legalMoves(moves);
+                    put(connection, OK);
+                    putNumber(connection, count);
+                    for (int i = 0; i < count; i++)
+                    {
+                        putNumber(connection, Move.from(moves[i]));
+                        putNumber(connection, Move.to(moves[i]));
+                        putNumber(connection, Move.count(moves[i]));
+                    }
+                    put(connection, '\n');
+                }
+                else if (word(STATE))
+                {
+                    Table table = table(connection);
+                    finish();
+                    saved.reset();
+                    table.state.writeTo(savedOutput);
+                    put(connection, OK);
+                    put(connection, ' ');
+                    byte[] written = saved.toByteArray();
+                    for (byte value : written)
+                    {
+                        put(connection, HEX[(value >> 4) & 0xF]);
+                        put(connection, HEX[value & 0xF]);
+                    }
+                    put(connection, '\n');
+                }
+                else if (word(CLOSE))
+                {
+                    int number = (int) number(connection.tables.length - 1);
+                    table(connection, number);
+                    finish();
+                    connection.tables[number] = null;
+                    connection.tableCount--;
+                    connection.firstFree = Math.min(connection.firstFree, number);
+                    tableCount.decrementAndGet();
+                    replyOk(connection);
+                }
+                else if (word(QUIT))
+                {
+                    finish();
+                    connection.quitting = true;
+                    replyOk(connection);
+                }
+                else
+                {
+                    reply(connection, "unknown request");
+                }
+            }
+            catch (IllegalArgumentException e)
+            {
+                reply(connection, e.getMessage());
+            }
+            catch (IOException e)
+            {
+                // STATE writes to memory
+                reply(connection, e.getMessage());
+            }
+        }
+        /**
+         * Opens a table for a NEW request
+         * @param connection the connection
+         */
+        private void newTable(Connection connection)
+        {
+            String level = text();
+            if (!level.equals("level1") && !level.equals("level2"))
+            {
+                throw new IllegalArgumentException("unknown level");
+            }
+            long dealNumber;
+            if (position < end)
+            {
+                try
+                {
+                    dealNumber = KlondikeDeal.parseDealNumber(text());
+                }
+                catch (NumberFormatException e)
+                {
+                    throw new IllegalArgumentException("bad deal number");
+                }
+            }
+            else
+            {
+                dealNumber = DealRandom.newDealNumber();
+            }
+            finish();
+            if (connection.tableCount == MAX_TABLES_PER_CONNECTION)
+            {
+                throw new IllegalArgumentException("too many tables");
+            }
+            int number = connection.firstFree;
+            while (number < connection.tables.length && connection.tables[number] != null)
+            {
+                number++;
+            }
+            if (number == connection.tables.length)
+            {
+                Table[] grown = new Table[Math.min(MAX_TABLES_PER_CONNECTION, connection.tables.length * 2)];
+                System.arraycopy(connection.tables, 0, grown, 0, connection.tables.length);
+                connection.tables = grown;
+            }
+            connection.tables[number] = new Table(KlondikeDeal.fromNumber(level, dealNumber));
+            connection.tableCount++;
+            connection.firstFree = number + 1;
+            tableCount.incrementAndGet();
+            put(connection, OK);
+            putNumber(connection, number);
+            put(connection, ' ');
+            put(connection, ascii(KlondikeDeal.formatDealNumber(dealNumber)));
+            put(connection, '\n');
+        }
+        /**
+         * Plays a move on a table if it is legal
+         * @param connection the connection
+         * @param table the table
+         * @param move the packed move
+         */
+        private void play(Connection connection, Table table, int move)
+        {
+            finish();
+            if (!table.state.isLegal(move))
+            {
+                reply(connection, "illegal move");
+                return;
+            }
+            table.moveLog.record(table.state.apply(move));
+            replyNumber(connection, table.state.getCardsOnSuitPiles());
+        }
+        /**
+         * Reads the number of a table of the connection
+         * @param connection the connection
+         * @return the table
+         */
+        private Table table(Connection connection)
+        {
+            return table(connection, (int) number(connection.tables.length - 1));
+        }
+        /**
+         * @param connection a connection
+         * @param number the number of one of its tables
+         * @return the table
+         */
+        private Table table(Connection connection, int number)
+        {
+            Table table = connection.tables[number];
+            if (table == null)
+            {
+                throw new IllegalArgumentException("no such table");
+            }
+            return table;
+        }
+        /**
+         * @return the next word, as a KlondikeState pile number
+         */
+        private int pile()
+        {
+            return (int) number(KlondikeState.PILE_COUNT - 1);
+        }
+        /**
+         * Reads a word if it is the expected one
+         * @param expected the word
+         * @return whether it was read
+         */
+        private boolean word(byte[] expected)
+        {
+            skipSpaces();
+            int length = wordEnd() - position;
+            if (length != expected.length)
+            {
+                return false;
+            }
+            for (int i = 0; i < length; i++)
+            {
+                if (line[position + i] != expected[i])
+                {
+                    return false;
+                }
+            }
+            position += length;
+            return true;
+        }
+        /**
+         * @param max the largest number accepted
+         * @return the next word, as a decimal number from 0 to max
+         */
+        private long number(long max)
+        {
+            skipSpaces();
+            int wordEnd = wordEnd();
+            if (wordEnd == position)
+            {
+                throw new IllegalArgumentException("missing number");
+            }
+            long value = 0;
+            for (; position < wordEnd; position++)
+            {
+                int digit = line[position] - '0';
+                if (digit < 0 || digit > 9 || value > max)
+                {
+                    throw new IllegalArgumentException("bad number");
+                }
+                value = value * 10 + digit;
+            }
+            if (value > max)
+            {
+                throw new IllegalArgumentException("bad number");
+            }
+            return value;
+        }
+        /**
+         * @return the next word
+         */
+        private String text()
+        {
+            skipSpaces();
+            int wordEnd = wordEnd();
+            if (wordEnd == position)
+            {
+                throw new IllegalArgumentException("missing word");
+            }
+            String text = new String(line, position, wordEnd - position, StandardCharsets.US_ASCII);
+            position = wordEnd;
+            return text;
+        }
+        /**
+         * Checks that the request has no more words
+         */
+        private void finish()
+        {
+            skipSpaces();
+            if (position < end)
+            {
+                throw new IllegalArgumentException("too many words");
+            }
+        }
+        private void skipSpaces()
+        {
+            while (position < end && line[position] == ' ')
+            {
+                position++;
+            }
+        }
+        /**
+         * @return the index after the word at position
+         */
+        private int wordEnd()
+        {
+            int wordEnd = position;
+            while (wordEnd < end && line[wordEnd] != ' ')
+            {
+                wordEnd++;
+            }
+            return wordEnd;
+        }
+        private void replyOk(Connection connection)
+        {
+            put(connection, OK);
+            put(connection, '\n');
+        }
+        /**
+         * Replies OK and a number
+         * @param connection the connection
+         * @param value the number
+         */
+        private void replyNumber(Connection connection, int value)
+        {
+            put(connection, OK);
+            putNumber(connection, value);
+            put(connection, '\n');
+        }
+        /**
+         * Replies an error
+         * @param connection the connection
+         * @param reason why the request failed
+         */
+        private void reply(Connection connection, String reason)
+        {
+            put(connection, ERR);
+            put(connection, ascii(reason));
+            put(connection, '\n');
+        }
+        /**
+         * Adds a space and a decimal number to the replies
+         * @param connection the connection
+         * @param value the number, at least 0
+         */
+        private void putNumber(Connection connection, int value)
+        {
+            put(connection, ' ');
+            int divisor = 1;
+            while (divisor <= value / 10)
+            {
+                divisor *= 10;
+            }
+            for (; divisor > 0; divisor /= 10)
+            {
+                put(connection, (byte) ('0' + value / divisor % 10));
+            }
+        }
+        private void put(Connection connection, byte[] bytes)
+        {
+            ensure(connection, bytes.length);
+            connection.output.put(bytes);
+        }
+        private void put(Connection connection, char value)
+        {
+            put(connection, (byte) value);
+        }
+        private void put(Connection connection, byte value)
+        {
+            ensure(connection, 1);
+            connection.output.put(value);
+        }
+        /**
+         * Grows the output buffer of a connection if it has not room for some more bytes
+         * @param connection the connection
+         * @param length the number of bytes to add
+         */
+        private void ensure(Connection connection, int length)
+        {
+            ByteBuffer output = connection.output;
+            if (output.remaining() >= length)
+            {
+                return;
+            }
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(output.capacity() * 2, output.position() + length));
+            output.flip();
+            grown.put(output);
+            connection.output = grown;
+        }
+        /**
+         * Closes a connection and frees its tables
+         * @param key the key of the connection
+         */
+        private void close(SelectionKey key)
+        {
+            Connection connection = (Connection) key.attachment();
+            key.cancel();
+            tableCount.addAndGet(-connection.tableCount);
+            connection.tableCount = 0;
+            try
+            {
+                connection.channel.close();
+            }
+            catch (IOException e)
+            {
+                // nothing more to do with it
+            }
+        }
+        /**
+         * Closes every connection of the loop, once it stopped
+         */
+        private void closeAll()
+        {
+            SocketChannel channel;
+            while ((channel = pending.poll()) != null)
+            {
+                try
+                {
+                    channel.close();
+                }
+                catch (IOException e)
+                {
+                    // nothing more to do with it
+                }
+            }
+            for (SelectionKey key : selector.keys())
+            {
+                close(key);
+            }
+            try
+            {
+                selector.close();
+            }
+            catch (IOException e)
+            {
+                // nothing more to do with it
+            }
+        }
+    }
+}
@@ -0,0 +1,295 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class GameServerLoad
+{
+    /**
+     * GameServerLoad.java
+     * A load test of GameServer standing in for the tournament clients: every connection opens its
+     * tables, then plays rounds of one random legal move on each of them, one request at a time,
+     * and the time from sending a PLAY or DRAW to reading its reply is counted in a
+     * LatencyHistogram. Without a port the server runs in the same JVM, and the heap it takes per
+     * table is measured between the opening of the tables and the first move. The first connection
+     * also checks that moves of more cards than a Move can hold are refused.
+     */
+    private GameServerLoad()
+    {
+    }
+
+    /**
+     * Runs a load test from the command line
+     * @param args the number of connections, of tables per connection and of moves per table, and
+     *             optionally the port of a running server
+     */
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length < 3)
+        {
+            System.out.println("Usage: --server-load <connections> <tables per connection> <moves per table> [port]");
+            return;
+        }
+        int connections = Integer.parseInt(args[0]);
+        int tables = Integer.parseInt(args[1]);
+        int moves = Integer.parseInt(args[2]);
+        GameServer server = null;
+        int port;
+        if (args.length > 3)
+        {
+            port = Integer.parseInt(args[3]);
+        }
+        else
+        {
+            server = new GameServer(0, Runtime.getRuntime().availableProcessors());
+            server.start();
+            port = server.getPort();
+        }
+        try
+        {
+            run(connections, tables, moves, port, server);
+        }
+        finally
+        {
+            if (server != null)
+            {
+                server.close();
+            }
+        }
+    }
+    /**
+     * Runs a load test and prints its results
+     * @param connections the number of connections
+     * @param tables the number of tables of every connection
+     * @param moves the number of moves played on every table
+     * @param port the port of the server
+     * @param server the server if it runs in this JVM, to measure its heap, or null
+     * @return the latency of the moves
+     */
+    public static LatencyHistogram run(int connections, final int tables, final int moves, final int port,
+                                       GameServer server) throws Exception
+    {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong won = new AtomicLong();
+        final CyclicBarrier opened = new CyclicBarrier(connections + 1);
+        final CyclicBarrier measured = new CyclicBarrier(connections + 1);
+        final Exception[] failure = new Exception[1];
+        long heapBefore = usedHeap();
+        Thread[] clients = new Thread[connections];
+        for (int i = 0; i < connections; i++)
+        {
+            final int client = i;
+            clients[i] = new Thread(new Runnable() {
+                public void run() {
+                    try
+                    {
+                        play(client, tables, moves, port, opened, measured, latency, won);
+                    }
+                    catch (Exception e)
+                    {
+                        synchronized (failure)
+                        {
+                            if (failure[0] == null)
+                            {
+                                failure[0] = e;
+                            }
+                        }
+                        // a reset barrier would keep waiting for this client, a broken one does not
+                        breakBarrier(opened);
+                        breakBarrier(measured);
+                    }
+                }
+            }, "GameServerLoad-" + (i + 1));
+            clients[i].start();
+        }
+        long start = System.nanoTime();
+        try
+        {
+            opened.await();
+            if (server != null)
+            {
+                long perTable = (usedHeap() - heapBefore) / Math.max(1, server.getTableCount());
+                System.out.println(server.getTableCount() + " tables open, about " + perTable
+                        + " bytes of heap per table (with the buffers of the connections)");
+            }
+            start = System.nanoTime();
+            measured.await();
+        }
+        catch (BrokenBarrierException e)
+        {
+            // a client failed, its failure is thrown once every client is done
+        }
+        for (Thread thread : clients)
+        {
+            thread.join();
+        }
+        long millis = Math.max(1, (System.nanoTime() - start) / 1000000);
+        if (failure[0] != null)
+        {
+            throw failure[0];
+        }
+        System.out.println(latency.getCount() + " moves on " + (long) connections * tables + " tables in " + millis
+                + " ms (" + latency.getCount() * 1000 / millis + " moves/s), " + won.get() + " won");
+        System.out.println("move latency " + latency.getSummary());
+        return latency;
+    }
+    /**
+     * Plays on the tables of one connection
+     * @param client the number of the client, which seeds its deals and its moves
+     * @param tables the number of tables to open
+     * @param moves the number of moves to play on every table
+     * @param port the port of the server
+     * @param opened waited for once the tables are open
+     * @param measured waited for before the first move
+     * @param latency counts the time of every move
+     * @param won counts the tables won
+     */
+    private static void play(int client, int tables, int moves, int port, CyclicBarrier opened,
+                             CyclicBarrier measured, LatencyHistogram latency, AtomicLong won)
+            throws IOException, InterruptedException, BrokenBarrierException
+    {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        try
+        {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            OutputStream out = socket.getOutputStream();
+            int[] numbers = new int[tables];
+            for (int i = 0; i < tables; i++)
+            {
+                String reply = request(in, out, "NEW level1 " + ((long) client * tables + i));
+                numbers[i] = Integer.parseInt(reply.split(" ")[1]);
+            }
+            if (client == 0 && tables > 0)
+            {
+                checkRefused(in, out, numbers[0]);
+            }
+            opened.await();
+            measured.await();
+            Random random = new Random(client);
+            boolean[] done = new boolean[tables];
+            for (int round = 0; round < moves; round++)
+            {
+                for (int i = 0; i < tables; i++)
+                {
+                    if (done[i])
+                    {
+                        continue;
+                    }
+                    String[] legal = request(in, out, "MOVES " + numbers[i]).split(" ");
+                    int count = Integer.parseInt(legal[1]);
+                    String move;
+                    if (count == 0)
+                    {
+                        done[i] = true;
+                        continue;
+                    }
+                    int pick = 2 + 3 * random.nextInt(count);
+                    int from = Integer.parseInt(legal[pick]);
+                    move = from == KlondikeState.STOCK || from == KlondikeState.WASTE && Integer.parseInt(legal[pick + 1]) == KlondikeState.STOCK
+                            ? "DRAW " + numbers[i] : "PLAY " + numbers[i] + " " + legal[pick] + " " + legal[pick + 1] + " " + legal[pick + 2];
+                    long start = System.nanoTime();
+                    String reply = request(in, out, move);
+                    latency.record(System.nanoTime() - start);
+                    if (Integer.parseInt(reply.split(" ")[1]) == CardCode.COUNT)
+                    {
+                        done[i] = true;
+                        won.incrementAndGet();
+                    }
+                }
+            }
+            request(in, out, "QUIT");
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+    /**
+     * Checks that moves of more cards than a move holds are refused and leave the table as it was:
+     * a legal move sent with MAX_COUNT + 1 more cards would otherwise spill into the flag of a move
+     * that turned a card up, and be played
+     * @param in the input of the connection
+     * @param out the output of the connection
+     * @param table the number of the table to try them on
+     * @throws IOException if the connection failed or a move was not refused
+     */
+    private static void checkRefused(BufferedReader in, OutputStream out, int table) throws IOException
+    {
+        String before = request(in, out, "STATE " + table);
+        String[] legal = request(in, out, "MOVES " + table).split(" ");
+        String[] moves = {
+            "PLAY " + table + " " + legal[2] + " " + legal[3] + " " + (Integer.parseInt(legal[4]) + Move.MAX_COUNT + 1),
+            "PLAY " + table + " " + legal[2] + " " + legal[3] + " " + CardCode.COUNT,
+        };
+        for (String move : moves)
+        {
+            out.write((move + "\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String reply = in.readLine();
+            if (reply == null || !reply.startsWith("ERR"))
+            {
+                throw new IOException(move + " was not refused: " + reply);
+            }
+        }
+        if (!request(in, out, "STATE " + table).equals(before))
+        {
+            throw new IOException("A refused move changed table " + table);
+        }
+    }
+    /**
+     * Sends a request and reads its reply
+     * @param in the input of the connection
+     * @param out the output of the connection
+     * @param request the request, without the line separator
+     * @return the reply
+     * @throws IOException if the connection failed or the server replied an error
+     */
+    private static String request(BufferedReader in, OutputStream out, String request) throws IOException
+    {
+        out.write((request + "\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        String reply = in.readLine();
+        if (reply == null || !reply.startsWith("OK"))
+        {
+            throw new IOException(request + ": " + reply);
+        }
+        return reply;
+    }
+    /**
+     * Breaks a barrier so that nobody waits on it any more, unless this arrival trips it
+     * @param barrier the barrier
+     */
+    private static void breakBarrier(CyclicBarrier barrier)
+    {
+        try
+        {
+            barrier.await(0, TimeUnit.NANOSECONDS);
+        }
+        catch (InterruptedException | BrokenBarrierException | TimeoutException e)
+        {
+            // the barrier is broken, or was just tripped
+        }
+    }
+    /**
+     * @return the heap used once the garbage is collected, in bytes
+     */
+    private static long usedHeap()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+        {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,150 @@
+public final class KlondikeDeal
+{
+    /**
+     * KlondikeDeal.java
+     * An immutable deal: the order of the 52 card codes before they are laid out, together with the
+     * level that shuffled them. The first 28 cards go to the main piles (one card on the first pile,
+     * two on the second and so on) and the remaining 24 form the stock, the last card being on top.
+     * This class does not depend on AWT or Swing.
+     *
+     * Every deal comes from a 64 bit deal number fed to DealRandom, so a deal number and a level
+     * are enough to reproduce the same layout on any machine.
+     */
+    private final byte[] order;
+
+    private final String level;
+
+    private final long dealNumber;
+
+    /**
+     * Constructs a deal from a card order
+     * @param order the 52 card codes
+     * @param level the level that produced the order
+     * @param dealNumber the deal number that produced the order
+     */
+    private KlondikeDeal(byte[] order, String level, long dealNumber)
+    {
+        this.order = order;
+        this.level = level;
+        this.dealNumber = dealNumber;
+    }
+    /**
+     * Shuffles a new deal with a random deal number depending on the level
+     * @param level the level selected for making the shuffle ("level1" or "level2")
+     * @return the new deal
+     */
+    public static KlondikeDeal shuffle(String level)
+    {
+        return fromNumber(level, DealRandom.newDealNumber());
+    }
+    /**
+     * Shuffles the deal of a deal number; the same number and level always give the same deal
+     * @param level the level selected for making the shuffle ("level1" or "level2")
+     * @param dealNumber the deal number
+     * @return the deal of the number
+     */
+    public static KlondikeDeal fromNumber(String level, long dealNumber)
+    {
+        DealRandom random = new DealRandom(dealNumber);
+        byte[] codes = newOrderedCodes();
+        if (level.equals("level2"))
+        {
+            shuffleDeckLevel2(codes, random);
+        }
+        else
+        {
+            shuffleDeckLevel1(codes, random);
+        }
+        return new KlondikeDeal(codes, level, dealNumber);
+    }
+    /**
+     * Parses a deal number as shown to the player, an unsigned decimal number
+     * @param text the deal number
+     * @return the deal number
+     * @throws NumberFormatException if the text is not a deal number
+     */
+    public static long parseDealNumber(String text)
+    {
+        return Long.parseUnsignedLong(text.trim());
+    }
+    /**
+     * Formats a deal number the way it is shown to the player
+     * @param dealNumber the deal number
+     * @return the deal number as an unsigned decimal number
+     */
+    public static String formatDealNumber(long dealNumber)
+    {
+        return Long.toUnsignedString(dealNumber);
+    }
+    /**
+     * @return the 52 card codes, suit by suit, from ace to king
+     */
+    static byte[] newOrderedCodes()
+    {
+        byte[] codes = new byte[CardCode.COUNT];
+        for (int i = 0; i < codes.length; i++)
+        {
+            codes[i] = CardCode.fromOrdinal(i);
+        }
+        return codes;
+    }
+    /**
+     * Shuffles the card codes for level 1
+     * @param codes the card codes to shuffle
+     * @param random the source of randomness
+     */
+    static void shuffleDeckLevel1(byte[] codes, DealRandom random)
+    {
+        for (int i = 0; i < codes.length; i++) {
+            int index = i+random.nextInt(codes.length-i);
+            swap(codes, i, index);
+        }
+    }
+    /**
+     * Shuffles the card codes for level 2
+     * @param codes the card codes to shuffle
+     * @param random the source of randomness
+     */
+    static void shuffleDeckLevel2(byte[] codes, DealRandom random)
+    {
+        for (int i = 0; i < codes.length; i++)
+        {
+            int index = (int)(random.nextDouble() * codes.length);
+            swap(codes, i, index);
+        }
+    }
+    /**
+     * Swaps two card codes
+     * @param codes the card codes
+     * @param index the first index
+     * @param i the second index
+     */
+    private static void swap(byte[] codes, int index, int i)
+    {
+        byte temp = codes[index];
+        codes[index] = codes[i];
+        codes[i] = temp;
+    }
+    /**
+     * @param index the position in the deal, 0 being the first card dealt
+     * @return the card code at that position
+     */
+    public byte getCardAt(int index)
+    {
+        return order[index];
+    }
+    /**
+     * @return the deal number that produced the deal
+     */
+    public long getDealNumber()
+    {
+        return dealNumber;
+    }
+    /**
+     * @return the level that produced the deal
+     */
+    public String getLevel()
+    {
+        return level;
+    }
+}
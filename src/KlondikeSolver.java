@@ -0,0 +1,481 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public final class KlondikeSolver
+{
+    /**
+     * KlondikeSolver.java
+     * Finds out whether a deal can be won and, if it can, a winning sequence of moves. The search
+     * is a depth first search on a KlondikeState with move ordering and a transposition table of
+     * Zobrist hashes, so no position is searched twice. Dominated moves are pruned:
+     * - when a card can safely go to its suit pile (no card that could still need it is left), that
+     *   is the only move tried;
+     * - a king that is already alone on its main pile is never moved to another empty main pile.
+     * Both keep the search exhaustive, so a deal is only reported UNSOLVABLE when no win exists.
+     * Splitting a run between two main piles is rarely useful, but it can be the only way to uncover
+     * the card another one has to be built on, so it is tried last rather than pruned.
+     *
+     * Every search is bounded by a node budget and a timeout so it can run with a predictable latency,
+     * and can be cancelled from another thread, which can also follow its progress.
+     * A solver is not thread safe, but it can be reused for any number of deals.
+     */
+    public enum Status
+    {
+        /** A winning sequence was found */
+        SOLVED,
+        /** The whole search space was explored without finding a win, so the position is lost */
+        UNSOLVABLE,
+        /** The node budget ran out */
+        NODE_LIMIT,
+        /** The time budget ran out */
+        TIMEOUT,
+        /** Some lines were cut at the maximum depth, so the deal may still be winnable */
+        DEPTH_LIMIT,
+        /** The search was cancelled */
+        CANCELLED
+    }
+    /**
+     * The outcome of a search and its statistics
+     */
+    public static final class Result
+    {
+        private final Status status;
+        private final int[] solution;
+        private final long nodes;
+        private final long tableProbes;
+        private final long tableHits;
+        private final long elapsedNanos;
+
+        Result(Status status, int[] solution, long nodes, long tableProbes, long tableHits, long elapsedNanos)
+        {
+            this.status = status;
+            this.solution = solution;
+            this.nodes = nodes;
+            this.tableProbes = tableProbes;
+            this.tableHits = tableHits;
+            this.elapsedNanos = elapsedNanos;
+        }
+        /**
+         * @return how the search ended
+         */
+        public Status getStatus()
+        {
+            return status;
+        }
+        /**
+         * @return whether a winning sequence was found
+         */
+        public boolean isSolved()
+        {
+            return status == Status.SOLVED;
+        }
+        /**
+         * @return whether the search proved that no sequence of moves wins from the position; any
+         * other status than SOLVED or UNSOLVABLE proves nothing
+         */
+        public boolean isLost()
+        {
+            return status == Status.UNSOLVABLE;
+        }
+        /**
+         * @return a copy of the winning moves, to be applied in order from the searched position,
+         * or an empty array if the deal was not solved
+         */
+        public int[] getSolution()
+        {
+            return solution.clone();
+        }
+        /**
+         * @return the number of moves of the winning sequence, 0 if the deal was not solved
+         */
+        public int getSolutionLength()
+        {
+            return solution.length;
+        }
+        /**
+         * @return the number of positions visited
+         */
+        public long getNodes()
+        {
+            return nodes;
+        }
+        /**
+         * @return the number of transposition table lookups
+         */
+        public long getTableProbes()
+        {
+            return tableProbes;
+        }
+        /**
+         * @return the number of lookups that found an already searched position
+         */
+        public long getTableHits()
+        {
+            return tableHits;
+        }
+        /**
+         * @return the ratio of lookups that found an already searched position
+         */
+        public double getTableHitRate()
+        {
+            return tableProbes == 0 ? 0 : (double) tableHits / tableProbes;
+        }
+        /**
+         * @return the duration of the search in nanoseconds
+         */
+        public long getElapsedNanos()
+        {
+            return elapsedNanos;
+        }
+        /**
+         * @return the number of positions visited per second
+         */
+        public double getNodesPerSecond()
+        {
+            return elapsedNanos == 0 ? 0 : nodes * 1e9 / elapsedNanos;
+        }
+        public String toString()
+        {
+            return status + " in " + solution.length + " moves, " + nodes + " nodes, "
+                    + String.format("%.0f nodes/s, %.1f%% table hits", getNodesPerSecond(), getTableHitRate() * 100);
+        }
+    }
+
+    /**
+     * Default number of positions a single search may visit
+     */
+    public static final long DEFAULT_NODE_BUDGET = 2000000;
+    /**
+     * Default time a single search may take
+     */
+    public static final long DEFAULT_TIMEOUT_MILLIS = 10000;
+    /**
+     * Default log2 of the number of transposition table entries
+     */
+    public static final int DEFAULT_TABLE_BITS = 20;
+    /**
+     * Maximum length of a line of play
+     */
+    public static final int MAX_DEPTH = 1024;
+    /**
+     * How many slots a lookup inspects before it gives up and overwrites one
+     */
+    private static final int PROBE_LIMIT = 8;
+    /**
+     * How often, in nodes, the clock is read
+     */
+    private static final int CLOCK_INTERVAL = 1024;
+
+    private final long nodeBudget;
+    private final long timeoutNanos;
+
+    private final long[] tableKeys;
+    private final int[] tableStamps;
+    private final int tableMask;
+    private int stamp;
+
+    private final int[] moves = new int[MAX_DEPTH * KlondikeState.MAX_MOVES];
+    private final int[] moveCounts = new int[MAX_DEPTH];
+    private final int[] cursors = new int[MAX_DEPTH];
+    private final int[] applied = new int[MAX_DEPTH];
+    private final int[] scratch = new int[KlondikeState.MAX_MOVES];
+    private final int[] scores = new int[KlondikeState.MAX_MOVES];
+
+    private long nodes;
+    /**
+     * The number of positions searched so far, published every CLOCK_INTERVAL nodes for other threads
+     */
+    private volatile long progress;
+    private long tableProbes;
+    private long tableHits;
+
+    /**
+     * Constructs a solver with the default budgets and table size
+     */
+    public KlondikeSolver()
+    {
+        this(DEFAULT_NODE_BUDGET, DEFAULT_TIMEOUT_MILLIS, DEFAULT_TABLE_BITS);
+    }
+    /**
+     * Constructs a solver
+     * @param nodeBudget the number of positions a single search may visit
+     * @param timeoutMillis the time a single search may take
+     * @param tableBits log2 of the number of transposition table entries
+     */
+    public KlondikeSolver(long nodeBudget, long timeoutMillis, int tableBits)
+    {
+        if (nodeBudget <= 0 || timeoutMillis <= 0 || tableBits < 4 || tableBits > 30)
+        {
+            throw new IllegalArgumentException("Invalid solver limits");
+        }
+        this.nodeBudget = nodeBudget;
+        this.timeoutNanos = timeoutMillis * 1000000L;
+        tableKeys = new long[1 << tableBits];
+        tableStamps = new int[1 << tableBits];
+        tableMask = (1 << tableBits) - 1;
+    }
+    /**
+     * Solves a deal from its initial layout
+     * @param deal the deal to solve
+     * @return the result of the search
+     */
+    public Result solve(KlondikeDeal deal)
+    {
+        return solve(new KlondikeState(deal));
+    }
+    /**
+     * Solves a game from its current position. The state is left unchanged.
+     * @param state the position to solve from
+     * @return the result of the search
+     */
+    public Result solve(KlondikeState state)
+    {
+        return solve(state, null);
+    }
+    /**
+     * Solves a game from its current position, stopping early when a flag is set. The state is left
+     * unchanged.
+     * @param state the position to solve from
+     * @param cancelled the flag that cancels the search when set, checked every CLOCK_INTERVAL
+     *                  nodes, or null
+     * @return the result of the search
+     */
+    public Result solve(KlondikeState state, AtomicBoolean cancelled)
+    {
+        long start = System.nanoTime();
+        nodes = 0;
+        progress = 0;
+        tableProbes = 0;
+        tableHits = 0;
+        newStamp();
+        if (state.isWon())
+        {
+            return result(Status.SOLVED, 0, start);
+        }
+        seen(state.getHash());
+        boolean cut = false;
+        int depth = 0;
+        moveCounts[0] = orderedMoves(state, 0);
+        cursors[0] = 0;
+        while (depth >= 0)
+        {
+            if (cursors[depth] == moveCounts[depth])
+            {
+                depth--;
+                if (depth >= 0)
+                {
+                    state.undo(applied[depth]);
+                }
+                continue;
+            }
+            int move = moves[depth * KlondikeState.MAX_MOVES + cursors[depth]++];
+            applied[depth] = state.applyLegal(move);
+            nodes++;
+            if (state.isWon())
+            {
+                Result result = result(Status.SOLVED, depth + 1, start);
+                while (depth >= 0)
+                {
+                    state.undo(applied[depth--]);
+                }
+                return result;
+            }
+            if ((nodes & (CLOCK_INTERVAL - 1)) == 0 || nodes >= nodeBudget)
+            {
+                progress = nodes;
+                Status stop = nodes >= nodeBudget ? Status.NODE_LIMIT
+                        : System.nanoTime() - start >= timeoutNanos ? Status.TIMEOUT
+                        : cancelled != null && cancelled.get() ? Status.CANCELLED : null;
+                if (stop != null)
+                {
+                    while (depth >= 0)
+                    {
+                        state.undo(applied[depth--]);
+                    }
+                    return result(stop, 0, start);
+                }
+            }
+            if (seen(state.getHash()))
+            {
+                state.undo(applied[depth]);
+                continue;
+            }
+            if (depth + 1 == MAX_DEPTH)
+            {
+                cut = true;
+                state.undo(applied[depth]);
+                continue;
+            }
+            depth++;
+            moveCounts[depth] = orderedMoves(state, depth);
+            cursors[depth] = 0;
+        }
+        return result(cut ? Status.DEPTH_LIMIT : Status.UNSOLVABLE, 0, start);
+    }
+    /**
+     * @return the number of positions the search running now (or the last one) has searched, as
+     * of the last clock check; safe to call from any thread
+     */
+    public long getProgress()
+    {
+        return progress;
+    }
+    /**
+     * Builds a result, copying the winning line from the applied moves
+     * @param status how the search ended
+     * @param length the number of moves of the winning line, 0 if there is none
+     * @param start the value of System.nanoTime when the search started
+     * @return the result
+     */
+    private Result result(Status status, int length, long start)
+    {
+        int[] solution = new int[length];
+        for (int i = 0; i < length; i++)
+        {
+            solution[i] = applied[i] & Move.MOVE_MASK;
+        }
+        return new Result(status, solution, nodes, tableProbes, tableHits, System.nanoTime() - start);
+    }
+    /**
+     * Writes the moves worth trying at a depth, best first, into the move stack
+     * @param state the position
+     * @param depth the depth of the position
+     * @return the number of moves written
+     */
+    private int orderedMoves(KlondikeState state, int depth)
+    {
+        int count = state.legalMoves(scratch);
+        int base = depth * KlondikeState.MAX_MOVES;
+        int n = 0;
+        for (int i = 0; i < count; i++)
+        {
+            int move = scratch[i];
+            int score = score(state, move);
+            if (score == SAFE)
+            {
+                moves[base] = move;
+                return 1;
+            }
+            if (score == PRUNED)
+            {
+                continue;
+            }
+            int j = n++;
+            while (j > 0 && scores[j - 1] < score)
+            {
+                scores[j] = scores[j - 1];
+                moves[base + j] = moves[base + j - 1];
+                j--;
+            }
+            scores[j] = score;
+            moves[base + j] = move;
+        }
+        return n;
+    }
+
+    private static final int SAFE = Integer.MAX_VALUE;
+    private static final int PRUNED = Integer.MIN_VALUE;
+
+    /**
+     * Rates a legal move for the move ordering
+     * @param state the position
+     * @param move the move
+     * @return SAFE if the move should be the only one tried, PRUNED if it is dominated, or else
+     * a score where higher is tried first
+     */
+    private static int score(KlondikeState state, int move)
+    {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        if (from == KlondikeState.STOCK || to == KlondikeState.STOCK)
+        {
+            return 0;
+        }
+        if (to >= KlondikeState.SUIT_PILE_0)
+        {
+            int code = state.getTopCode(from);
+            return isSafeOnSuit(state, code) ? SAFE : 500 - CardCode.face(code);
+        }
+        if (from == KlondikeState.WASTE)
+        {
+            return 300;
+        }
+        int size = state.getMainSize(from);
+        int faceDown = state.getMainFaceDown(from);
+        int bottom = size - Move.count(move);
+        if (bottom == 0)
+        {
+            return state.getMainSize(to) == 0 ? PRUNED : 200;
+        }
+        if (bottom == faceDown)
+        {
+            return 400 + faceDown;
+        }
+        int uncovered = state.getMainCard(from, bottom - 1);
+        int suitCount = state.getFoundationCount(CardCode.suit(uncovered));
+        return suitCount == CardCode.face(uncovered) ? 100 : -100;
+    }
+    /**
+     * A card is safe on its suit pile when no card still needs it to be built on: it is an ace or
+     * a two, or both suit piles of the other color already reach one below it.
+     * @param state the position
+     * @param code the card
+     * @return whether moving the card to its suit pile can never hurt
+     */
+    private static boolean isSafeOnSuit(KlondikeState state, int code)
+    {
+        int face = CardCode.face(code);
+        if (face <= 1)
+        {
+            return true;
+        }
+        for (int other = 0; other < CardCode.SUIT_COUNT; other++)
+        {
+            if (CardCode.isRed(CardCode.encode(other, 0)) != CardCode.isRed(code)
+                    && state.getFoundationCount(other) < face)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+    /**
+     * Looks a position up in the transposition table and records it if it is not there
+     * @param hash the Zobrist hash of the position
+     * @return whether the position had already been searched
+     */
+    private boolean seen(long hash)
+    {
+        tableProbes++;
+        int index = (int) (hash ^ (hash >>> 32)) & tableMask;
+        for (int i = 0; i < PROBE_LIMIT; i++)
+        {
+            int slot = (index + i) & tableMask;
+            if (tableStamps[slot] != stamp)
+            {
+                tableStamps[slot] = stamp;
+                tableKeys[slot] = hash;
+                return false;
+            }
+            if (tableKeys[slot] == hash)
+            {
+                tableHits++;
+                return true;
+            }
+        }
+        tableKeys[index] = hash;
+        return false;
+    }
+    /**
+     * Starts a new search: entries of the previous searches become invalid without clearing the table
+     */
+    private void newStamp()
+    {
+        stamp++;
+        if (stamp == 0)
+        {
+            Arrays.fill(tableStamps, 0);
+            stamp = 1;
+        }
+    }
+}
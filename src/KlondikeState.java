@@ -0,0 +1,765 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public final class KlondikeState
+{
+    /**
+     * KlondikeState.java
+     * The mutable state of a Klondike game, independent of AWT and Swing. It holds the seven main
+     * piles (with the number of face down cards at the bottom of each), the four suit piles, the
+     * stock and the waste, all as card codes in primitive arrays. The rules are the same ones the
+     * game has always used: one card is drawn at a time, the waste can be recycled as many times as
+     * wanted, main piles are built down in alternating colors with kings on empty piles, and suit
+     * piles are built up by suit from the ace. Only one card at a time may go to a suit pile and
+     * cards never come back from a suit pile.
+     *
+     * The state keeps a Zobrist hash of the position up to date on every move, so searches can
+     * recognize positions they have already seen in constant time.
+     */
+    public static final int MAIN_PILE_COUNT = 7;
+    public static final int SUIT_PILE_COUNT = 4;
+    /**
+     * Pile numbers used by Move: main piles first, then suit piles, the waste and the stock
+     */
+    public static final int MAIN_PILE_0 = 0;
+    public static final int SUIT_PILE_0 = MAIN_PILE_0 + MAIN_PILE_COUNT;
+    public static final int WASTE = SUIT_PILE_0 + SUIT_PILE_COUNT;
+    public static final int STOCK = WASTE + 1;
+    public static final int PILE_COUNT = STOCK + 1;
+    /**
+     * Number of cards left in the stock after the main piles have been dealt
+     */
+    public static final int STOCK_CAPACITY = CardCode.COUNT - MAIN_PILE_COUNT * (MAIN_PILE_COUNT + 1) / 2;
+    /**
+     * The tallest possible main pile: six face down cards under a full run from king to ace
+     */
+    public static final int MAIN_PILE_CAPACITY = MAIN_PILE_COUNT - 1 + CardCode.FACE_COUNT;
+    /**
+     * Upper bound of the number of legal moves in any position, the size legalMoves needs
+     */
+    public static final int MAX_MOVES = 64;
+    /**
+     * Flag of a face down card in the saved form of a main pile
+     */
+    private static final int SAVED_FACE_DOWN = 0x40;
+    /**
+     * Saved in place of the top card of an empty suit pile
+     */
+    private static final int SAVED_EMPTY = 0xFF;
+
+    private final byte[][] mainPiles;
+    private final int[] mainSizes;
+    private final int[] mainFaceDown;
+    /**
+     * The top card of every suit pile or CardCode.NONE; the cards below it are implied
+     */
+    private final int[] suitTops;
+
+    private final byte[] stock;
+    private int stockSize;
+    private final byte[] waste;
+    private int wasteSize;
+
+    private int cardsOnSuitPiles;
+    /**
+     * Zobrist hash of the position, updated incrementally by every move
+     */
+    private long hash;
+
+    /**
+     * Lays out a deal the same way GamePanel always has: the main pile i gets the next i + 1 cards
+     * of the deal with only the last one face up, and the rest of the deal becomes the stock
+     * @param deal the deal to lay out
+     */
+    public KlondikeState(KlondikeDeal deal)
+    {
+        mainPiles = new byte[MAIN_PILE_COUNT][MAIN_PILE_CAPACITY];
+        mainSizes = new int[MAIN_PILE_COUNT];
+        mainFaceDown = new int[MAIN_PILE_COUNT];
+        suitTops = new int[SUIT_PILE_COUNT];
+        stock = new byte[STOCK_CAPACITY];
+        waste = new byte[STOCK_CAPACITY];
+        reset(deal);
+    }
+    /**
+     * Copy constructor, used to hand a snapshot of a game to another thread
+     * @param other the state to copy
+     */
+    public KlondikeState(KlondikeState other)
+    {
+        mainPiles = new byte[MAIN_PILE_COUNT][];
+        for (int i = 0; i < MAIN_PILE_COUNT; i++)
+        {
+            mainPiles[i] = other.mainPiles[i].clone();
+        }
+        mainSizes = other.mainSizes.clone();
+        mainFaceDown = other.mainFaceDown.clone();
+        suitTops = other.suitTops.clone();
+        stock = other.stock.clone();
+        stockSize = other.stockSize;
+        waste = other.waste.clone();
+        wasteSize = other.wasteSize;
+        cardsOnSuitPiles = other.cardsOnSuitPiles;
+        hash = other.hash;
+    }
+    /**
+     * Lays out a deal again, reusing the arrays of this state
+     * @param deal the deal to lay out
+     */
+    public void reset(KlondikeDeal deal)
+    {
+        int cardNum = 0;
+        for (int i = 0; i < MAIN_PILE_COUNT; i++)
+        {
+            for (int j = 0; j <= i; j++)
+            {
+                mainPiles[i][j] = deal.getCardAt(cardNum++);
+            }
+            mainSizes[i] = i + 1;
+            mainFaceDown[i] = i;
+        }
+        for (int i = 0; i < SUIT_PILE_COUNT; i++)
+        {
+            suitTops[i] = CardCode.NONE;
+        }
+        stockSize = 0;
+        while (cardNum < CardCode.COUNT)
+        {
+            stock[stockSize++] = deal.getCardAt(cardNum++);
+        }
+        wasteSize = 0;
+        cardsOnSuitPiles = 0;
+        hash = computeHash();
+    }
+    /**
+     * Makes this state the same position as another one, reusing the arrays of this state
+     * @param other the state to copy
+     */
+    public void copyFrom(KlondikeState other)
+    {
+        for (int i = 0; i < MAIN_PILE_COUNT; i++)
+        {
+            System.arraycopy(other.mainPiles[i], 0, mainPiles[i], 0, MAIN_PILE_CAPACITY);
+        }
+        System.arraycopy(other.mainSizes, 0, mainSizes, 0, MAIN_PILE_COUNT);
+        System.arraycopy(other.mainFaceDown, 0, mainFaceDown, 0, MAIN_PILE_COUNT);
+        System.arraycopy(other.suitTops, 0, suitTops, 0, SUIT_PILE_COUNT);
+        System.arraycopy(other.stock, 0, stock, 0, STOCK_CAPACITY);
+        stockSize = other.stockSize;
+        System.arraycopy(other.waste, 0, waste, 0, STOCK_CAPACITY);
+        wasteSize = other.wasteSize;
+        cardsOnSuitPiles = other.cardsOnSuitPiles;
+        hash = other.hash;
+    }
+    /**
+     * Computes the Zobrist hash of the position from scratch
+     * @return the hash of the position
+     */
+    long computeHash()
+    {
+        long h = 0;
+        for (int i = 0; i < MAIN_PILE_COUNT; i++)
+        {
+            for (int j = 0; j < mainSizes[i]; j++)
+            {
+                h ^= Zobrist.main(i, j, mainPiles[i][j]);
+            }
+            h ^= Zobrist.faceDown(i, mainFaceDown[i]);
+        }
+        for (int i = 0; i < SUIT_PILE_COUNT; i++)
+        {
+            for (int face = 0; suitTops[i] != CardCode.NONE && face <= CardCode.face(suitTops[i]); face++)
+            {
+                h ^= Zobrist.suit(CardCode.encode(CardCode.suit(suitTops[i]), face));
+            }
+        }
+        for (int j = 0; j < stockSize; j++)
+        {
+            h ^= Zobrist.stock(j, stock[j]);
+        }
+        for (int j = 0; j < wasteSize; j++)
+        {
+            h ^= Zobrist.waste(j, waste[j]);
+        }
+        return h;
+    }
+    /**
+     * Writes every legal move of the position into moves
+     * @param moves the buffer to fill, at least MAX_MOVES long
+     * @return the number of legal moves written
+     */
+    public int legalMoves(int[] moves)
+    {
+        int n = 0;
+        for (int from = MAIN_PILE_0; from < SUIT_PILE_0; from++)
+        {
+            int size = mainSizes[from];
+            if (size == 0)
+            {
+                continue;
+            }
+            int slot = suitPileFor(mainPiles[from][size - 1]);
+            if (slot >= 0)
+            {
+                moves[n++] = Move.make(from, SUIT_PILE_0 + slot, 1);
+            }
+            for (int j = mainFaceDown[from]; j < size; j++)
+            {
+                int code = mainPiles[from][j];
+                for (int to = MAIN_PILE_0; to < SUIT_PILE_0; to++)
+                {
+                    if (to != from && CardCode.canStackOnMain(code, getTopCode(to)))
+                    {
+                        moves[n++] = Move.make(from, to, size - j);
+                    }
+                }
+            }
+        }
+        if (wasteSize > 0)
+        {
+            int code = waste[wasteSize - 1];
+            int slot = suitPileFor(code);
+            if (slot >= 0)
+            {
+                moves[n++] = Move.make(WASTE, SUIT_PILE_0 + slot, 1);
+            }
+            for (int to = MAIN_PILE_0; to < SUIT_PILE_0; to++)
+            {
+                if (CardCode.canStackOnMain(code, getTopCode(to)))
+                {
+                    moves[n++] = Move.make(WASTE, to, 1);
+                }
+            }
+        }
+        if (stockSize > 0)
+        {
+            moves[n++] = Move.draw();
+        }
+        else if (wasteSize > 0)
+        {
+            moves[n++] = Move.recycle(wasteSize);
+        }
+        return n;
+    }
+    /**
+     * Returns the suit pile a card can go to: the pile of its suit, or the first empty pile for an ace
+     * @param code the card code
+     * @return the index of the suit pile or -1 if the card can not go to any suit pile
+     */
+    private int suitPileFor(int code)
+    {
+        for (int i = 0; i < SUIT_PILE_COUNT; i++)
+        {
+            if (CardCode.canStackOnSuit(code, suitTops[i]))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+    /**
+     * Returns whether a move is legal in the current position
+     * @param move the packed move
+     * @return whether the move may be applied
+     */
+    public boolean isLegal(int move)
+    {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int count = Move.count(move);
+        if (from == STOCK)
+        {
+            return to == WASTE && count == 1 && stockSize > 0;
+        }
+        if (to == STOCK)
+        {
+            return from == WASTE && stockSize == 0 && wasteSize > 0 && count == wasteSize;
+        }
+        if (count < 1 || from == to || to >= WASTE)
+        {
+            return false;
+        }
+        int code;
+        if (from < SUIT_PILE_0)
+        {
+            int size = mainSizes[from];
+            if (count > size - mainFaceDown[from])
+            {
+                return false;
+            }
+            code = mainPiles[from][size - count];
+        }
+        else if (from == WASTE)
+        {
+            if (count != 1 || wasteSize == 0)
+            {
+                return false;
+            }
+            code = waste[wasteSize - 1];
+        }
+        else
+        {
+            return false;
+        }
+        if (to < SUIT_PILE_0)
+        {
+            return CardCode.canStackOnMain(code, getTopCode(to));
+        }
+        return count == 1 && CardCode.canStackOnSuit(code, suitTops[to - SUIT_PILE_0]);
+    }
+    /**
+     * Applies a move, turning up the new top card of the source pile if it was face down
+     * @param move the packed move, which must be legal
+     * @return the move with Move.FLIP set if a card was turned up; pass it to undo to take the move back
+     * @throws IllegalArgumentException if the move is not legal
+     */
+    public int apply(int move)
+    {
+        if (!isLegal(move))
+        {
+            throw new IllegalArgumentException("Illegal move: " + Move.toString(move));
+        }
+        return applyLegal(move);
+    }
+    /**
+     * Applies a move that is known to be legal, for example one returned by legalMoves
+     * @param move the packed move
+     * @return the move with Move.FLIP set if a card was turned up
+     */
+    public int applyLegal(int move)
+    {
+        move &= Move.MOVE_MASK;
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int count = Move.count(move);
+        if (from == STOCK)
+        {
+            pushWaste(popStock());
+            return move;
+        }
+        if (to == STOCK)
+        {
+            while (wasteSize > 0)
+            {
+                pushStock(popWaste());
+            }
+            return move;
+        }
+        if (from == WASTE)
+        {
+            push(to, popWaste());
+            return move;
+        }
+        int size = mainSizes[from];
+        for (int j = size - count; j < size; j++)
+        {
+            int code = mainPiles[from][j];
+            hash ^= Zobrist.main(from, j, code);
+            push(to, code);
+        }
+        size -= count;
+        mainSizes[from] = size;
+        if (size > 0 && mainFaceDown[from] == size)
+        {
+            setFaceDown(from, size - 1);
+            return move | Move.FLIP;
+        }
+        return move;
+    }
+    /**
+     * Takes back a move returned by apply or applyLegal. Moves must be undone in reverse order.
+     * @param applied the move as returned when it was applied
+     */
+    public void undo(int applied)
+    {
+        int from = Move.from(applied);
+        int to = Move.to(applied);
+        int count = Move.count(applied);
+        if (from == STOCK)
+        {
+            pushStock(popWaste());
+            return;
+        }
+        if (to == STOCK)
+        {
+            while (stockSize > 0)
+            {
+                pushWaste(popStock());
+            }
+            return;
+        }
+        if (from == WASTE)
+        {
+            pushWaste(pop(to));
+            return;
+        }
+        if (Move.flipped(applied))
+        {
+            setFaceDown(from, mainFaceDown[from] + 1);
+        }
+        int size = mainSizes[from] + count;
+        for (int j = size - 1; j >= size - count; j--)
+        {
+            int code = pop(to);
+            mainPiles[from][j] = (byte) code;
+            hash ^= Zobrist.main(from, j, code);
+        }
+        mainSizes[from] = size;
+    }
+    /**
+     * Puts a card on top of a main pile or a suit pile
+     * @param pile the pile number
+     * @param code the card code
+     */
+    private void push(int pile, int code)
+    {
+        if (pile < SUIT_PILE_0)
+        {
+            int depth = mainSizes[pile]++;
+            mainPiles[pile][depth] = (byte) code;
+            hash ^= Zobrist.main(pile, depth, code);
+        }
+        else
+        {
+            suitTops[pile - SUIT_PILE_0] = code;
+            cardsOnSuitPiles++;
+            hash ^= Zobrist.suit(code);
+        }
+    }
+    /**
+     * Removes the card on top of a main pile or a suit pile
+     * @param pile the pile number
+     * @return the card code that was removed
+     */
+    private int pop(int pile)
+    {
+        if (pile < SUIT_PILE_0)
+        {
+            int depth = --mainSizes[pile];
+            int code = mainPiles[pile][depth];
+            hash ^= Zobrist.main(pile, depth, code);
+            return code;
+        }
+        int slot = pile - SUIT_PILE_0;
+        int code = suitTops[slot];
+        suitTops[slot] = CardCode.isAce(code) ? CardCode.NONE : code - 1;
+        cardsOnSuitPiles--;
+        hash ^= Zobrist.suit(code);
+        return code;
+    }
+    /**
+     * Changes the number of face down cards of a main pile
+     * @param pile the index of the main pile
+     * @param count the new number of face down cards
+     */
+    private void setFaceDown(int pile, int count)
+    {
+        hash ^= Zobrist.faceDown(pile, mainFaceDown[pile]) ^ Zobrist.faceDown(pile, count);
+        mainFaceDown[pile] = count;
+    }
+    /**
+     * @param code the card to put on top of the stock
+     */
+    private void pushStock(int code)
+    {
+        stock[stockSize] = (byte) code;
+        hash ^= Zobrist.stock(stockSize++, code);
+    }
+    /**
+     * @return the card removed from the top of the stock
+     */
+    private int popStock()
+    {
+        int code = stock[--stockSize];
+        hash ^= Zobrist.stock(stockSize, code);
+        return code;
+    }
+    /**
+     * @param code the card to put on top of the waste
+     */
+    private void pushWaste(int code)
+    {
+        waste[wasteSize] = (byte) code;
+        hash ^= Zobrist.waste(wasteSize++, code);
+    }
+    /**
+     * @return the card removed from the top of the waste
+     */
+    private int popWaste()
+    {
+        int code = waste[--wasteSize];
+        hash ^= Zobrist.waste(wasteSize, code);
+        return code;
+    }
+    /**
+     * @return whether every card is on a suit pile
+     */
+    public boolean isWon()
+    {
+        return cardsOnSuitPiles == CardCode.COUNT;
+    }
+    /**
+     * Returns the code of the top card of any pile
+     * @param pile the pile number
+     * @return the code of the top card or CardCode.NONE if the pile is empty
+     */
+    public int getTopCode(int pile)
+    {
+        if (pile < SUIT_PILE_0)
+        {
+            int size = mainSizes[pile];
+            return size == 0 ? CardCode.NONE : mainPiles[pile][size - 1];
+        }
+        if (pile < WASTE)
+        {
+            return suitTops[pile - SUIT_PILE_0];
+        }
+        if (pile == WASTE)
+        {
+            return wasteSize == 0 ? CardCode.NONE : waste[wasteSize - 1];
+        }
+        return stockSize == 0 ? CardCode.NONE : stock[stockSize - 1];
+    }
+    /**
+     * @param pile the index of a main pile (0..6)
+     * @return the number of cards in the main pile
+     */
+    public int getMainSize(int pile)
+    {
+        return mainSizes[pile];
+    }
+    /**
+     * @param pile the index of a main pile (0..6)
+     * @return the number of face down cards at the bottom of the main pile
+     */
+    public int getMainFaceDown(int pile)
+    {
+        return mainFaceDown[pile];
+    }
+    /**
+     * @param pile the index of a main pile (0..6)
+     * @param index the position in the pile, 0 being the bottom card
+     * @return the card code
+     */
+    public int getMainCard(int pile, int index)
+    {
+        return mainPiles[pile][index];
+    }
+    /**
+     * @param slot the index of a suit pile (0..3)
+     * @return the number of cards in the suit pile
+     */
+    public int getSuitSize(int slot)
+    {
+        int top = suitTops[slot];
+        return top == CardCode.NONE ? 0 : CardCode.face(top) + 1;
+    }
+    /**
+     * @return the number of cards in the stock
+     */
+    public int getStockSize()
+    {
+        return stockSize;
+    }
+    /**
+     * @param index the position in the stock, 0 being the bottom card
+     * @return the card code
+     */
+    public int getStockCard(int index)
+    {
+        return stock[index];
+    }
+    /**
+     * @return the number of cards in the waste
+     */
+    public int getWasteSize()
+    {
+        return wasteSize;
+    }
+    /**
+     * @param index the position in the waste, 0 being the bottom card
+     * @return the card code
+     */
+    public int getWasteCard(int index)
+    {
+        return waste[index];
+    }
+    /**
+     * @return the number of cards on the suit piles
+     */
+    public int getCardsOnSuitPiles()
+    {
+        return cardsOnSuitPiles;
+    }
+    /**
+     * @return the Zobrist hash of the position
+     */
+    public long getHash()
+    {
+        return hash;
+    }
+    /**
+     * Returns the number of cards on the suit pile of a suit, whichever of the four piles it is
+     * @param suit the index of the suit in Card.SUITS
+     * @return the number of cards of that suit on the suit piles
+     */
+    public int getFoundationCount(int suit)
+    {
+        for (int i = 0; i < SUIT_PILE_COUNT; i++)
+        {
+            int top = suitTops[i];
+            if (top != CardCode.NONE && CardCode.suit(top) == suit)
+            {
+                return CardCode.face(top) + 1;
+            }
+        }
+        return 0;
+    }
+    /**
+     * Writes the position in its saved form, one byte per card: every main pile as its size
+     * followed by its cards from the bottom, each the CardCode.ordinal of the card with
+     * SAVED_FACE_DOWN added if the card is face down; the top card of every suit pile, or
+     * SAVED_EMPTY; then the stock and the waste, each as its size followed by its cards.
+     * @param out the output to write to
+     */
+    public void writeTo(DataOutput out) throws IOException
+    {
+        for (int i = 0; i < MAIN_PILE_COUNT; i++)
+        {
+            out.writeByte(mainSizes[i]);
+            for (int j = 0; j < mainSizes[i]; j++)
+            {
+                out.writeByte(CardCode.ordinal(mainPiles[i][j]) | (j < mainFaceDown[i] ? SAVED_FACE_DOWN : 0));
+            }
+        }
+        for (int i = 0; i < SUIT_PILE_COUNT; i++)
+        {
+            out.writeByte(suitTops[i] == CardCode.NONE ? SAVED_EMPTY : CardCode.ordinal(suitTops[i]));
+        }
+        out.writeByte(stockSize);
+        for (int j = 0; j < stockSize; j++)
+        {
+            out.writeByte(CardCode.ordinal(stock[j]));
+        }
+        out.writeByte(wasteSize);
+        for (int j = 0; j < wasteSize; j++)
+        {
+            out.writeByte(CardCode.ordinal(waste[j]));
+        }
+    }
+    /**
+     * Reads a position written by writeTo into this state. The position is checked: every card
+     * must be somewhere exactly once and face down cards must be under the face up ones.
+     * @param in the input to read from
+     * @throws IOException if the input can not be read or does not hold a valid position, in which
+     * case this state is left in an undefined position
+     */
+    public void readFrom(DataInput in) throws IOException
+    {
+        boolean[] seen = new boolean[CardCode.COUNT];
+        for (int i = 0; i < MAIN_PILE_COUNT; i++)
+        {
+            mainSizes[i] = readSize(in, MAIN_PILE_CAPACITY);
+            mainFaceDown[i] = 0;
+            for (int j = 0; j < mainSizes[i]; j++)
+            {
+                int saved = in.readUnsignedByte();
+                if ((saved & SAVED_FACE_DOWN) != 0)
+                {
+                    if (mainFaceDown[i] != j || j == mainSizes[i] - 1)
+                    {
+                        throw new IOException("Face down card above a face up card in " + pileName(MAIN_PILE_0 + i));
+                    }
+                    if (j >= i)
+                    {
+                        // main pile i is dealt with i face down cards, and never gets more
+                        throw new IOException("Too many face down cards in " + pileName(MAIN_PILE_0 + i));
+                    }
+                    mainFaceDown[i]++;
+                }
+                mainPiles[i][j] = readCard(saved & ~SAVED_FACE_DOWN, seen);
+            }
+        }
+        cardsOnSuitPiles = 0;
+        for (int i = 0; i < SUIT_PILE_COUNT; i++)
+        {
+            int saved = in.readUnsignedByte();
+            suitTops[i] = CardCode.NONE;
+            if (saved != SAVED_EMPTY)
+            {
+                int top = readCard(saved, seen);
+                for (int face = CardCode.ACE; face < CardCode.face(top); face++)
+                {
+                    readCard(CardCode.ordinal(CardCode.encode(CardCode.suit(top), face)), seen);
+                }
+                suitTops[i] = top;
+                cardsOnSuitPiles += CardCode.face(top) + 1;
+            }
+        }
+        stockSize = readSize(in, STOCK_CAPACITY);
+        for (int j = 0; j < stockSize; j++)
+        {
+            stock[j] = readCard(in.readUnsignedByte(), seen);
+        }
+        wasteSize = readSize(in, STOCK_CAPACITY);
+        for (int j = 0; j < wasteSize; j++)
+        {
+            waste[j] = readCard(in.readUnsignedByte(), seen);
+        }
+        for (int i = 0; i < CardCode.COUNT; i++)
+        {
+            if (!seen[i])
+            {
+                throw new IOException("Missing card " + CardCode.toString(CardCode.fromOrdinal(i)));
+            }
+        }
+        hash = computeHash();
+    }
+    /**
+     * @param in the input to read from
+     * @param capacity the largest valid size
+     * @return the size of a saved pile
+     * @throws IOException if the size is not valid
+     */
+    private static int readSize(DataInput in, int capacity) throws IOException
+    {
+        int size = in.readUnsignedByte();
+        if (size > capacity)
+        {
+            throw new IOException("Pile of " + size + " cards");
+        }
+        return size;
+    }
+    /**
+     * @param ordinal the saved CardCode.ordinal of a card
+     * @param seen the cards read so far, indexed by ordinal; the card is added to it
+     * @return the code of the card
+     * @throws IOException if the ordinal is not a card or the card was already read
+     */
+    private static byte readCard(int ordinal, boolean[] seen) throws IOException
+    {
+        if (ordinal >= CardCode.COUNT || seen[ordinal])
+        {
+            throw new IOException("Invalid or repeated card " + ordinal);
+        }
+        seen[ordinal] = true;
+        return CardCode.fromOrdinal(ordinal);
+    }
+    /**
+     * @param pile a pile number
+     * @return the name of the pile, for logs and debugging
+     */
+    public static String pileName(int pile)
+    {
+        if (pile < SUIT_PILE_0)
+        {
+            return "main pile " + (pile - MAIN_PILE_0 + 1);
+        }
+        if (pile < WASTE)
+        {
+            return "suit pile " + (pile - SUIT_PILE_0 + 1);
+        }
+        return pile == WASTE ? "waste" : "stock";
+    }
+}
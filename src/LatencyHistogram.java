@@ -0,0 +1,189 @@
+import java.beans.ConstructorProperties;
+import java.util.Arrays;
+import java.util.Locale;
+
+public final class LatencyHistogram
+{
+    /**
+     * LatencyHistogram.java
+     * Counts durations in buckets whose width grows with the duration, like an HdrHistogram: every
+     * power of two is split in SUB_BUCKETS buckets, so any percentile is known to about 3% from 1
+     * nanosecond to MAX_NANOS, in a fixed array of counts. Recording a duration is a few shifts and
+     * an increment, with no allocation, so it can be called on every paint and every mouse event.
+     *
+     * The durations are recorded on one thread, the Event Dispatch Thread, and read from another,
+     * the JMX thread; the methods are synchronized, which costs next to nothing without contention.
+     */
+    /**
+     * log2 of the number of buckets per power of two
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * Longer durations are counted as MAX_NANOS, about 18 minutes
+     */
+    public static final long MAX_NANOS = (1L << 40) - 1;
+    private static final int BUCKET_COUNT = index(MAX_NANOS) + 1;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+
+    /**
+     * Counts a duration
+     * @param nanos the duration in nanoseconds; negative durations count as 0
+     */
+    public synchronized void record(long nanos)
+    {
+        long value = Math.max(0, Math.min(MAX_NANOS, nanos));
+        counts[index(value)]++;
+        count++;
+        totalNanos += value;
+        if (value > maxNanos)
+        {
+            maxNanos = value;
+        }
+    }
+    /**
+     * Forgets every duration
+     */
+    public synchronized void reset()
+    {
+        Arrays.fill(counts, 0);
+        count = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+    }
+    /**
+     * @return the number of durations counted
+     */
+    public synchronized long getCount()
+    {
+        return count;
+    }
+    /**
+     * @param percentile a percentile, from 0 to 100
+     * @return the longest duration of the bucket where that percentile falls, or 0 if nothing was counted
+     */
+    public synchronized long getPercentileNanos(double percentile)
+    {
+        if (count == 0)
+        {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * Math.min(100, percentile) / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++)
+        {
+            seen += counts[i];
+            if (seen >= rank)
+            {
+                return Math.min(maxNanos, highestValue(i));
+            }
+        }
+        return maxNanos;
+    }
+    /**
+     * @return a summary of the durations, in milliseconds
+     */
+    public synchronized Summary getSummary()
+    {
+        return new Summary(count, count == 0 ? 0 : totalNanos / (count * 1e6),
+                getPercentileNanos(50) / 1e6, getPercentileNanos(90) / 1e6,
+                getPercentileNanos(99) / 1e6, getPercentileNanos(99.9) / 1e6, maxNanos / 1e6);
+    }
+    /**
+     * @param nanos a duration, from 0 to MAX_NANOS
+     * @return the bucket of the duration: the first SUB_BUCKETS durations have a bucket each, then
+     *         every power of two has SUB_BUCKETS buckets
+     */
+    private static int index(long nanos)
+    {
+        if (nanos < SUB_BUCKETS)
+        {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+    /**
+     * @param index a bucket
+     * @return the longest duration counted in the bucket
+     */
+    private static long highestValue(int index)
+    {
+        if (index < SUB_BUCKETS)
+        {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * The count and percentiles of a histogram at some time, in milliseconds. It is the type of the
+     * attributes of FrameStatsMXBean, which JMX clients see as composite data.
+     */
+    public static final class Summary
+    {
+        private final long count;
+        private final double meanMillis;
+        private final double p50Millis;
+        private final double p90Millis;
+        private final double p99Millis;
+        private final double p999Millis;
+        private final double maxMillis;
+
+        @ConstructorProperties({"count", "meanMillis", "p50Millis", "p90Millis", "p99Millis", "p999Millis", "maxMillis"})
+        public Summary(long count, double meanMillis, double p50Millis, double p90Millis, double p99Millis,
+                double p999Millis, double maxMillis)
+        {
+            this.count = count;
+            this.meanMillis = meanMillis;
+            this.p50Millis = p50Millis;
+            this.p90Millis = p90Millis;
+            this.p99Millis = p99Millis;
+            this.p999Millis = p999Millis;
+            this.maxMillis = maxMillis;
+        }
+        public long getCount()
+        {
+            return count;
+        }
+        public double getMeanMillis()
+        {
+            return meanMillis;
+        }
+        public double getP50Millis()
+        {
+            return p50Millis;
+        }
+        public double getP90Millis()
+        {
+            return p90Millis;
+        }
+        public double getP99Millis()
+        {
+            return p99Millis;
+        }
+        public double getP999Millis()
+        {
+            return p999Millis;
+        }
+        public double getMaxMillis()
+        {
+            return maxMillis;
+        }
+        /**
+         * @return the summary on one line, for the debug overlay
+         */
+        public String toString()
+        {
+            return String.format(Locale.ROOT, "n=%d p50=%.2f p99=%.2f p99.9=%.2f max=%.2f ms",
+                    count, p50Millis, p99Millis, p999Millis, maxMillis);
+        }
+    }
+}
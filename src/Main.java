@@ -1,6 +1,12 @@
 import javax.swing.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
 
 
 public class Main
@@ -13,6 +19,14 @@ public class Main
      */
     private static JFrame    gameFrame;
     private static GamePanel gamePanel;
+    /**
+     * The game in progress is saved there after every move and resumed from there at startup
+     */
+    private static Autosave autosave;
+    /**
+     * The recording shown with --replay, or null when a game is played
+     */
+    private static GameReplayer replayer;
 
     private static final int FRAME_WIDTH  = 800;
     private static final int FRAME_HEIGHT = 700;
@@ -23,6 +37,10 @@ public class Main
     private static JButton showRulesButton;
     private static JButton selectLevel1Button;
     private static JButton selectLevel2Button;
+    /**
+     * The window of the rules, built the first time it is shown and hidden when closed
+     */
+    private static JDialog ruleFrame;
 
     private static class ShowRules implements ActionListener
     {
@@ -31,9 +49,21 @@ public class Main
          * if the showRulesButton is pushed, There will be opened a new window with the rules wirtten
          */
         public void actionPerformed(ActionEvent e)
+        {
+            if (ruleFrame == null || ruleFrame.getOwner() != gameFrame)
+            {
+                ruleFrame = makeRuleFrame();
+            }
+            ruleFrame.setLocationRelativeTo(gameFrame);
+            ruleFrame.setVisible(true);
+        }
+        /**
+         * @return the window of the rules, hidden
+         */
+        private static JDialog makeRuleFrame()
         {
             JDialog ruleFrame = new JDialog(gameFrame, true);
-            ruleFrame.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+            ruleFrame.setDefaultCloseOperation(JDialog.HIDE_ON_CLOSE);
             ruleFrame.setSize(FRAME_WIDTH, FRAME_HEIGHT-500);
             JScrollPane scroll;
             JEditorPane rulesTextPane = new JEditorPane("text/html", "");
@@ -42,10 +72,38 @@ public class Main
                     "<br><br> Cateva reguli legate de joc:<br>" +
                     " - jocul porneste automat cu nivelul 1.<br>" +
                     " - daca se doreste resetarea, doar apasati butonul nivelului pe care doriti sa il jucati.<br>" +
-                    " - cand scorul ajunge la 0, ati cam pierdut jocul.<br>";
+                    " - cand scorul ajunge la 0, ati cam pierdut jocul.<br>" +
+                    " - Ctrl+Z anuleaza ultima mutare, iar Ctrl+Y o reface.<br>" +
+                    " - H arata o mutare posibila.<br>" +
+                    " - S cauta o solutie de la pozitia curenta si o joaca; Esc o opreste.<br>";
             rulesTextPane.setText(rulesText);
             ruleFrame.add(scroll = new JScrollPane(rulesTextPane));
-            ruleFrame.setVisible(true);
+            return ruleFrame;
+        }
+    }
+
+    /**
+     * Moves the replay shown by a number of events
+     */
+    private static class SeekReplay extends AbstractAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int delta;
+
+        SeekReplay(int delta)
+        {
+            this.delta = delta;
+        }
+        public void actionPerformed(ActionEvent e)
+        {
+            if (replayer == null)
+            {
+                // a new game was started from the replay
+                return;
+            }
+            long index = (long) replayer.getEventIndex() + delta;
+            showReplay((int) Math.max(0, Math.min(replayer.getRecording().getEventCount(), index)));
         }
     }
 
@@ -57,8 +115,7 @@ public class Main
          */
         public void actionPerformed(ActionEvent e)
         {
-            gameFrame.dispose();
-            loadGame("level1");
+            newGame(KlondikeDeal.shuffle("level1"));
         }
     }
     private static class SelectLevel2 implements ActionListener
@@ -69,17 +126,40 @@ public class Main
          */
         public void actionPerformed(ActionEvent e)
         {
-            gameFrame.dispose();
-            loadGame("level2");
+            newGame(KlondikeDeal.shuffle("level2"));
         }
     }
+    /**
+     * Starts a new game in the game window, in place: the window, the panel, its listeners and
+     * the images are kept, only the game state and the score start again
+     * @param deal the deal to play
+     */
+    private static void newGame(KlondikeDeal deal)
+    {
+        saveRecording();
+        replayer = null;
+        gamePanel.newGame(deal);
+        gamePanel.setAutosave(autosave);
+        gameFrame.setTitle(gameTitle(deal));
+    }
+    /**
+     * @param deal a deal
+     * @return the title of the game window while the deal is played
+     */
+    private static String gameTitle(KlondikeDeal deal)
+    {
+        return "Klondike Solitaire - " + deal.getLevel() + " - deal " + KlondikeDeal.formatDealNumber(deal.getDealNumber());
+    }
     /**
      * Initializes game objects
+     * @param panel the panel of the game to play
      */
-    private static void loadGame(String argument)
+    private static void loadGame(GamePanel panel)
     {
-        gameFrame = new JFrame("Klondike Solitaire");
-        gamePanel = new GamePanel(argument);
+        KlondikeDeal deal = panel.getDeal();
+        gameFrame = new JFrame(gameTitle(deal));
+        gamePanel = panel;
+        replayer = null;
         showRulesButton=new JButton("Show Rules");
         showRulesButton.setBounds(120, FRAME_HEIGHT - 70, 120, 30);
         showRulesButton.addActionListener(new ShowRules());
@@ -98,13 +178,198 @@ public class Main
         gamePanel.repaint();
         gameFrame.add(gamePanel);
         gameFrame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        gameFrame.setSize(FRAME_WIDTH, FRAME_HEIGHT);
+        gameFrame.addWindowListener(new WindowAdapter() {
+            public void windowClosing(WindowEvent e) {
+                if (replayer != null) {
+                    return;
+                }
+                saveRecording();
+                if (!gamePanel.checkForWin()) {
+                    autosave.saveNow(gamePanel.save());
+                }
+            }
+        });
+        // the panel asks for the reference size of the table, where the cards are drawn unscaled
+        gameFrame.pack();
         gameFrame.setLocationRelativeTo(null);
         gameFrame.setVisible(true);
     }
-    public static void main(String[] args)
+    /**
+     * Shows a recorded game in the game window, starting from the deal. The arrow keys step
+     * through the events, Page Up and Page Down jump a checkpoint interval and Home and End go to
+     * the start and the end.
+     * @param recording the recording to show
+     */
+    private static void loadReplay(GameRecording recording)
+    {
+        GamePanel panel = new GamePanel(recording.getDeal());
+        GameReplayer replay = new GameReplayer(recording);
+        panel.showPosition(replay.getState());
+        loadGame(panel);
+        replayer = replay;
+        int interval = recording.getCheckpointInterval();
+        bindReplayKey(KeyEvent.VK_RIGHT, "replayNext", 1);
+        bindReplayKey(KeyEvent.VK_LEFT, "replayPrevious", -1);
+        bindReplayKey(KeyEvent.VK_PAGE_DOWN, "replayForward", interval);
+        bindReplayKey(KeyEvent.VK_PAGE_UP, "replayBack", -interval);
+        bindReplayKey(KeyEvent.VK_END, "replayEnd", Integer.MAX_VALUE);
+        bindReplayKey(KeyEvent.VK_HOME, "replayStart", Integer.MIN_VALUE);
+        showReplay(0);
+    }
+    /**
+     * Binds a key of the game window to a move of the replay
+     * @param key the key code
+     * @param name the name of the action
+     * @param delta the number of events to move by
+     */
+    private static void bindReplayKey(int key, String name, int delta)
+    {
+        gamePanel.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(key, 0), name);
+        gamePanel.getActionMap().put(name, new SeekReplay(delta));
+    }
+    /**
+     * Shows the position of the replay after a number of events
+     * @param index the number of events
+     */
+    private static void showReplay(int index)
+    {
+        replayer.seek(index);
+        gamePanel.showPosition(replayer.getState());
+        KlondikeDeal deal = replayer.getRecording().getDeal();
+        gameFrame.setTitle("Klondike Solitaire - replay of " + deal.getLevel() + " deal "
+                + KlondikeDeal.formatDealNumber(deal.getDealNumber()) + " - event " + index
+                + " of " + replayer.getRecording().getEventCount() + " at " + replayer.getTimeMillis() / 1000 + " s");
+    }
+    /**
+     * Writes the recording of the game played, if any move was played, to the recordings directory
+     * next to the autosave
+     */
+    private static void saveRecording()
+    {
+        GameRecording recording = gamePanel.getRecording();
+        if (replayer != null || recording == null || recording.getEventCount() == 0)
+        {
+            return;
+        }
+        KlondikeDeal deal = recording.getDeal();
+        File directory = new File(Autosave.defaultFile().getParentFile(), "recordings");
+        File file = new File(directory, deal.getLevel() + "-" + KlondikeDeal.formatDealNumber(deal.getDealNumber())
+                + "-" + System.currentTimeMillis() + ".klr");
+        try
+        {
+            if (!directory.isDirectory() && !directory.mkdirs())
+            {
+                throw new IOException("Can not create " + directory);
+            }
+            recording.write(file);
+        }
+        catch (IOException e)
+        {
+            System.out.println("Error writing recording: " + e.getMessage());
+        }
+    }
+    /**
+     * Opens the game window, runs a batch analysis when the first argument is --batch, checks
+     * recordings headless when it is --check-recordings, hosts headless tables for other programs
+     * with --server and load tests that server with --server-load.
+     * The window resumes the game saved when it was last closed, or plays a new level 1 deal; with
+     * --level level1|level2 and/or --deal <number> it plays that deal instead, and with
+     * --replay <file> it shows a recorded game.
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) throws Exception
+    {
+        StartupClock.start();
+        if (args.length > 0 && args[0].equals("--batch"))
+        {
+            BatchAnalyzer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--check-recordings"))
+        {
+            GameReplayer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--server"))
+        {
+            GameServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--server-load"))
+        {
+            GameServerLoad.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        String level = "level1";
+        Long dealNumber = null;
+        String replay = null;
+        for (int i = 0; i < args.length; i += 2)
+        {
+            if (i + 1 == args.length)
+            {
+                printUsage();
+                return;
+            }
+            if (args[i].equals("--level") && (args[i + 1].equals("level1") || args[i + 1].equals("level2")))
+            {
+                level = args[i + 1];
+            }
+            else if (args[i].equals("--deal"))
+            {
+                try
+                {
+                    dealNumber = KlondikeDeal.parseDealNumber(args[i + 1]);
+                }
+                catch (NumberFormatException e)
+                {
+                    printUsage();
+                    return;
+                }
+            }
+            else if (args[i].equals("--replay"))
+            {
+                replay = args[i + 1];
+            }
+            else
+            {
+                printUsage();
+                return;
+            }
+        }
+        // the images decode in the background while the window is built
+        AssetLoader.start();
+        FrameStats.register();
+        autosave = new Autosave(Autosave.defaultFile());
+        if (replay != null)
+        {
+            try
+            {
+                loadReplay(GameRecording.read(new File(replay)));
+            }
+            catch (IOException e)
+            {
+                System.out.println("Error reading recording: " + e.getMessage());
+            }
+            return;
+        }
+        SavedGame saved = args.length == 0 ? autosave.load() : null;
+        if (saved != null)
+        {
+            loadGame(new GamePanel(saved));
+        }
+        else
+        {
+            loadGame(new GamePanel(dealNumber == null ? KlondikeDeal.shuffle(level) : KlondikeDeal.fromNumber(level, dealNumber)));
+        }
+        gamePanel.setAutosave(autosave);
+    }
+    /**
+     * Prints the command line arguments the game understands
+     */
+    private static void printUsage()
     {
-        loadGame("level1");
+        System.out.println("Usage: [--level level1|level2] [--deal <number>] | --replay <file> | --batch ... | --check-recordings <file>..."
+                + " | --server [port] [threads] | --server-load <connections> <tables> <moves> [port]");
     }
 }
 
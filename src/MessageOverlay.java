@@ -0,0 +1,184 @@
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import javax.swing.Timer;
+
+public final class MessageOverlay
+{
+    /**
+     * MessageOverlay.java
+     * The messages drawn over the table: the end of the game (won or lost), the tip of Razvan and a
+     * status line, for example the progress of a solve. They are painted by GamePanel.paintComponent
+     * from the state of the game, so showing a message adds no component to the panel, and a frame
+     * costs the same few text draws however long the game lasts.
+     *
+     * The end message is recomputed by update, which GamePanel calls when the game state or the
+     * score changes; only the area of a message that changed is repainted.
+     */
+    public static final String WON_TEXT = "Felicitari!!Ai terminat jocul!!";
+    public static final String LOST_TEXT = "Felicitari!! Ai pierdut jocul!!";
+    public static final String TIP_TEXT = " Am nevoie de ajutorul tau pentru a termina jocul! Pentru mai multe detalii legate de joc, apasa pe butonul 'Show Rules'.";
+    /**
+     * How long the tip stays on the table
+     */
+    public static final int TIP_MILLIS = 5000;
+
+    /**
+     * Where the messages are on the table at its reference size (see TableLayout)
+     */
+    private static final Rectangle END_AREA = new Rectangle(0, 200, 800, 500);
+    private static final Rectangle TIP_AREA = new Rectangle(50, 600, 675, 30);
+    private static final Rectangle STATUS_AREA = new Rectangle(TableLayout.PILE_SPACE, 560, 660, 30);
+    private static final Font END_FONT = new Font("TimesNewRoman", Font.BOLD, 36);
+    private static final Font TIP_FONT = new Font("TimesNewRoman", Font.BOLD, 12);
+    private static final Font STATUS_FONT = new Font("TimesNewRoman", Font.BOLD, 14);
+
+    private final GamePanel panel;
+    /**
+     * The areas and fonts of the messages for the layout of the panel
+     */
+    private final Rectangle endArea = new Rectangle(END_AREA);
+    private final Rectangle tipArea = new Rectangle(TIP_AREA);
+    private final Rectangle statusArea = new Rectangle(STATUS_AREA);
+    private Font endFont = END_FONT;
+    private Font tipFont = TIP_FONT;
+    private Font statusFont = STATUS_FONT;
+    /**
+     * WON_TEXT, LOST_TEXT or null, as of the last update
+     */
+    private String endText;
+    private boolean tipShown;
+    private String status;
+    /**
+     * Hides the tip
+     */
+    private final Timer tipTimer;
+
+    /**
+     * Constructs the overlay of a panel
+     * @param panel the panel the messages are drawn on
+     */
+    public MessageOverlay(GamePanel panel)
+    {
+        this.panel = panel;
+        tipTimer = new Timer(TIP_MILLIS, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                tipShown = false;
+                MessageOverlay.this.panel.repaint(tipArea);
+            }
+        });
+        tipTimer.setRepeats(false);
+    }
+    /**
+     * Places the messages for a layout of the panel
+     * @param layout the layout of the panel
+     */
+    public void setLayout(TableLayout layout)
+    {
+        layout.scale(END_AREA, endArea);
+        layout.scale(TIP_AREA, tipArea);
+        layout.scale(STATUS_AREA, statusArea);
+        endFont = scale(END_FONT, layout);
+        tipFont = scale(TIP_FONT, layout);
+        statusFont = scale(STATUS_FONT, layout);
+    }
+    /**
+     * @param font a font of the reference table
+     * @param layout the layout of the panel
+     * @return the font zoomed like the table
+     */
+    private static Font scale(Font font, TableLayout layout)
+    {
+        return layout.getZoom() == 1 ? font : font.deriveFont((float) (font.getSize2D() * layout.getZoom()));
+    }
+    /**
+     * Shows or hides the end message after the game state or the score changed
+     */
+    public void update()
+    {
+        String text = panel.checkForWin() ? WON_TEXT : panel.getScore() == 0 ? LOST_TEXT : null;
+        if (text != endText)
+        {
+            endText = text;
+            panel.repaint(endArea);
+        }
+    }
+    /**
+     * Shows the tip for TIP_MILLIS, or a little longer if it is already shown
+     */
+    public void showTip()
+    {
+        tipShown = true;
+        tipTimer.restart();
+        panel.repaint(tipArea);
+    }
+    /**
+     * Shows a line of text under the piles
+     * @param text the text, or null to remove it
+     */
+    public void setStatus(String text)
+    {
+        status = text;
+        panel.repaint(statusArea);
+    }
+    /**
+     * @return the end message shown, or null
+     */
+    public String getEndText()
+    {
+        return endText;
+    }
+    /**
+     * Stops the timer of the tip, when the panel leaves its window
+     */
+    public void stop()
+    {
+        tipTimer.stop();
+    }
+    /**
+     * Draws the messages shown
+     * @param graphic the graphics context to draw on
+     */
+    public void draw(Graphics graphic)
+    {
+        if (status != null)
+        {
+            graphic.setColor(Color.white);
+            graphic.setFont(statusFont);
+            graphic.drawString(status, statusArea.x, statusArea.y + statusArea.height * 2 / 3);
+        }
+        if (tipShown)
+        {
+            drawBox(graphic, tipArea, TIP_TEXT, tipFont, false);
+        }
+        if (endText != null)
+        {
+            drawBox(graphic, endArea, endText, endFont, true);
+        }
+    }
+    /**
+     * Draws a line of text in a white box
+     * @param graphic the graphics context to draw on
+     * @param area the box
+     * @param text the text
+     * @param font the font of the text
+     * @param centered whether the text is centered in the box, or on its left
+     */
+    private static void drawBox(Graphics graphic, Rectangle area, String text, Font font, boolean centered)
+    {
+        graphic.setColor(Color.white);
+        graphic.fillRect(area.x, area.y, area.width, area.height);
+        graphic.setColor(Color.gray);
+        graphic.drawRect(area.x, area.y, area.width - 1, area.height - 1);
+        graphic.setColor(Color.black);
+        graphic.setFont(font);
+        FontMetrics metrics = graphic.getFontMetrics();
+        int x = centered ? area.x + (area.width - metrics.stringWidth(text)) / 2 : area.x + 2;
+        int y = area.y + (area.height - metrics.getHeight()) / 2 + metrics.getAscent();
+        graphic.drawString(text, x, y);
+    }
+}
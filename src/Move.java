@@ -0,0 +1,126 @@
+public final class Move
+{
+    /**
+     * Move.java
+     * A move of the headless engine, packed in a single int so that move lists, the solver and
+     * the move logs never allocate. Bits 0-3 hold the source pile, bits 4-7 the target pile and
+     * bits 8-12 the number of cards moved. Bit 13 is set by KlondikeState.apply when the move
+     * turned up a face down card, so the move can be undone exactly.
+     *
+     * Piles are numbered as in KlondikeState: the seven main piles, the four suit piles, the
+     * waste (the deck pile) and the stock. Drawing a card is a move of one card from the stock to
+     * the waste; recycling is a move of the whole waste back to the stock.
+     */
+    private Move()
+    {
+    }
+
+    private static final int PILE_MASK = 0x0F;
+    private static final int TO_SHIFT = 4;
+    private static final int COUNT_SHIFT = 8;
+    private static final int COUNT_MASK = 0x1F;
+    /**
+     * Set on an applied move that turned up the new top card of its source pile
+     */
+    public static final int FLIP = 1 << 13;
+    /**
+     * The largest number of cards a move can hold
+     */
+    public static final int MAX_COUNT = COUNT_MASK;
+    /**
+     * Mask of the bits that identify the move itself, without the flags set when applying it
+     */
+    public static final int MOVE_MASK = FLIP - 1;
+
+    /**
+     * Packs a move
+     * @param from the source pile
+     * @param to the target pile
+     * @param count the number of cards moved
+     * @return the packed move
+     */
+    public static int make(int from, int to, int count)
+    {
+        return from | (to << TO_SHIFT) | (count << COUNT_SHIFT);
+    }
+    /**
+     * @return the move drawing the top card of the stock onto the waste
+     */
+    public static int draw()
+    {
+        return make(KlondikeState.STOCK, KlondikeState.WASTE, 1);
+    }
+    /**
+     * @param wasteSize the number of cards in the waste
+     * @return the move turning the waste back into the stock
+     */
+    public static int recycle(int wasteSize)
+    {
+        return make(KlondikeState.WASTE, KlondikeState.STOCK, wasteSize);
+    }
+    /**
+     * @param move a packed move
+     * @return the source pile
+     */
+    public static int from(int move)
+    {
+        return move & PILE_MASK;
+    }
+    /**
+     * @param move a packed move
+     * @return the target pile
+     */
+    public static int to(int move)
+    {
+        return (move >>> TO_SHIFT) & PILE_MASK;
+    }
+    /**
+     * @param move a packed move
+     * @return the number of cards moved
+     */
+    public static int count(int move)
+    {
+        return (move >>> COUNT_SHIFT) & COUNT_MASK;
+    }
+    /**
+     * @param move a packed move
+     * @return whether the move turned up a face down card when it was applied
+     */
+    public static boolean flipped(int move)
+    {
+        return (move & FLIP) != 0;
+    }
+    /**
+     * @param move a packed move
+     * @return whether the move draws a card from the stock
+     */
+    public static boolean isDraw(int move)
+    {
+        return from(move) == KlondikeState.STOCK;
+    }
+    /**
+     * @param move a packed move
+     * @return whether the move turns the waste back into the stock
+     */
+    public static boolean isRecycle(int move)
+    {
+        return to(move) == KlondikeState.STOCK;
+    }
+    /**
+     * @param move a packed move
+     * @return a readable form of the move, for logs and debugging
+     */
+    public static String toString(int move)
+    {
+        if (isDraw(move))
+        {
+            return "draw";
+        }
+        if (isRecycle(move))
+        {
+            return "recycle";
+        }
+        return count(move) + " from " + KlondikeState.pileName(from(move)) + " to " + KlondikeState.pileName(to(move))
+                + (flipped(move) ? " (flip)" : "");
+    }
+}
@@ -0,0 +1,176 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+public final class MoveLog
+{
+    /**
+     * MoveLog.java
+     * The moves played in a game, for undo and redo. Every change of the game state is a move of
+     * KlondikeState (pile moves, draws and recycles), and the move returned by KlondikeState.apply
+     * also records whether it turned a card up, so the log holds everything needed to go back and
+     * forth. A move fits in 14 bits and is stored in a short: a session of thousands of moves takes
+     * a few kilobytes, and the array grows by doubling when it is full.
+     *
+     * The moves before the cursor have been played and can be undone; the moves after it have been
+     * undone and can be redone until a new move is recorded. This class does not depend on AWT or Swing.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+    /**
+     * Longest log readFrom accepts, far more than any game needs
+     */
+    private static final int MAX_SAVED_SIZE = 1 << 20;
+
+    private short[] moves = new short[INITIAL_CAPACITY];
+    /**
+     * Number of moves in the log, played or undone
+     */
+    private int size;
+    /**
+     * Number of moves played, the index of the next move to redo
+     */
+    private int cursor;
+
+    /**
+     * Records a move that was just applied, dropping the moves that could have been redone
+     * @param applied the move as returned by KlondikeState.apply
+     */
+    public void record(int applied)
+    {
+        if (cursor == moves.length)
+        {
+            moves = Arrays.copyOf(moves, moves.length * 2);
+        }
+        moves[cursor++] = (short) applied;
+        size = cursor;
+    }
+    /**
+     * Takes the last played move back
+     * @param state the game state the moves were applied to
+     * @return whether there was a move to undo
+     */
+    public boolean undo(KlondikeState state)
+    {
+        if (cursor == 0)
+        {
+            return false;
+        }
+        state.undo(moves[--cursor]);
+        return true;
+    }
+    /**
+     * Plays again the last move undone
+     * @param state the game state the moves were applied to
+     * @return whether there was a move to redo
+     */
+    public boolean redo(KlondikeState state)
+    {
+        if (cursor == size)
+        {
+            return false;
+        }
+        moves[cursor] = (short) state.applyLegal(moves[cursor]);
+        cursor++;
+        return true;
+    }
+    /**
+     * @return whether there is a move to undo
+     */
+    public boolean canUndo()
+    {
+        return cursor > 0;
+    }
+    /**
+     * @return whether there is a move to redo
+     */
+    public boolean canRedo()
+    {
+        return cursor < size;
+    }
+    /**
+     * @return the number of moves played
+     */
+    public int getCursor()
+    {
+        return cursor;
+    }
+    /**
+     * @return the number of moves in the log, played or undone
+     */
+    public int getSize()
+    {
+        return size;
+    }
+    /**
+     * @param index the index of the move, 0 being the first move of the game
+     * @return the move as it was applied, with Move.FLIP set if it turned a card up
+     */
+    public int getMove(int index)
+    {
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("No move " + index + " in a log of " + size);
+        }
+        return moves[index];
+    }
+    /**
+     * Makes this log hold the same moves as another one
+     * @param other the log to copy
+     */
+    public void copyFrom(MoveLog other)
+    {
+        if (moves.length < other.size)
+        {
+            moves = new short[other.moves.length];
+        }
+        System.arraycopy(other.moves, 0, moves, 0, other.size);
+        size = other.size;
+        cursor = other.cursor;
+    }
+    /**
+     * Writes the log: the number of moves and the cursor as ints, then every move as a short
+     * @param out the output to write to
+     */
+    public void writeTo(DataOutput out) throws IOException
+    {
+        out.writeInt(size);
+        out.writeInt(cursor);
+        for (int i = 0; i < size; i++)
+        {
+            out.writeShort(moves[i]);
+        }
+    }
+    /**
+     * Reads a log written by writeTo into this log. The moves themselves are not checked.
+     * @param in the input to read from
+     * @throws IOException if the input can not be read or the sizes are not valid
+     */
+    public void readFrom(DataInput in) throws IOException
+    {
+        int savedSize = in.readInt();
+        int savedCursor = in.readInt();
+        if (savedSize < 0 || savedSize > MAX_SAVED_SIZE || savedCursor < 0 || savedCursor > savedSize)
+        {
+            throw new IOException("Invalid move log of " + savedSize + " moves");
+        }
+        if (moves.length < savedSize)
+        {
+            moves = new short[savedSize];
+        }
+        for (int i = 0; i < savedSize; i++)
+        {
+            moves[i] = in.readShort();
+        }
+        size = savedSize;
+        cursor = savedCursor;
+    }
+    /**
+     * Forgets every move, for a new game
+     */
+    public void clear()
+    {
+        size = 0;
+        cursor = 0;
+    }
+}
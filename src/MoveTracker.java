@@ -0,0 +1,290 @@
+public final class MoveTracker
+{
+    /**
+     * MoveTracker.java
+     * Keeps track of the legal card moves of a KlondikeState as it changes, for hints and to tell
+     * whether the player is stuck. The face up cards of a main pile always form a run of
+     * alternating colors, so for a source pile and a target pile at most one card of the source can
+     * go on the target, and its place and color in the run follow from the top cards and the length
+     * of the run. The tracker keeps that card count for every pair of piles, and a move only changes
+     * the pairs of the piles it touches: after a move, update recomputes those rows and columns (a
+     * few dozen checks on the cached top cards) instead of every card of every pile against every
+     * pile. The number of legal card moves is
+     * kept with the pairs, so whether any move is available is known in constant time.
+     *
+     * Draws and recycles are not tracked pairs; they are legal whenever the stock or the waste has
+     * cards. This class does not depend on AWT or Swing.
+     */
+    /**
+     * Row of the waste in counts; the main piles use their own numbers
+     */
+    private static final int WASTE_ROW = KlondikeState.MAIN_PILE_COUNT;
+    /**
+     * Columns of counts: the main piles and the suit piles, by their KlondikeState numbers
+     */
+    private static final int TARGET_COUNT = KlondikeState.WASTE;
+
+    private final KlondikeState state;
+    /**
+     * The number of cards of the legal move from a source pile (row) to a target pile (column), or 0
+     */
+    private final byte[][] counts = new byte[WASTE_ROW + 1][TARGET_COUNT];
+    /**
+     * The number of non zero counts
+     */
+    private int legalCount;
+    /**
+     * The top card of every pile up to the waste, by KlondikeState number, as of the last update
+     */
+    private final int[] tops = new int[KlondikeState.WASTE + 1];
+    /**
+     * The number of face up cards of every source row, as of the last update
+     */
+    private final int[] runs = new int[WASTE_ROW + 1];
+
+    /**
+     * Constructs the tracker of a game state
+     * @param state the state, which must be passed to update after every move and to reset after
+     *              any other change
+     */
+    public MoveTracker(KlondikeState state)
+    {
+        this.state = state;
+        reset();
+    }
+    /**
+     * Recomputes every pair, after the state was changed other than by a move
+     */
+    public void reset()
+    {
+        for (int pile = 0; pile <= KlondikeState.WASTE; pile++)
+        {
+            readPile(pile);
+        }
+        for (int row = 0; row <= WASTE_ROW; row++)
+        {
+            refreshRow(row);
+        }
+    }
+    /**
+     * Recomputes the pairs of the piles a move touched, after it was applied or undone
+     * @param move the move
+     */
+    public void update(int move)
+    {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        if (from == KlondikeState.STOCK || to == KlondikeState.STOCK)
+        {
+            readPile(KlondikeState.WASTE);
+            refreshRow(WASTE_ROW);
+            return;
+        }
+        readPile(from);
+        readPile(to);
+        refreshPile(from);
+        refreshPile(to);
+    }
+    /**
+     * @return whether a card can be moved, not counting draws and recycles
+     */
+    public boolean hasCardMove()
+    {
+        return legalCount > 0;
+    }
+    /**
+     * @return whether any move is legal, draws and recycles included
+     */
+    public boolean hasMove()
+    {
+        return legalCount > 0 || state.getStockSize() > 0 || state.getWasteSize() > 0;
+    }
+    /**
+     * @return the number of legal card moves, not counting draws and recycles
+     */
+    public int getCardMoveCount()
+    {
+        return legalCount;
+    }
+    /**
+     * Picks a move worth showing the player: first a card going to a suit pile, then a move that
+     * turns a face down card up or brings a card from the waste, then any move but the pointless
+     * ones (a whole pile moved to an empty pile, or part of a run moved off a face up card that
+     * is as good a target and can not go to a suit pile), then a draw or a recycle, and last a
+     * pointless move
+     * @return the move, or -1 if no move is legal
+     */
+    public int hint()
+    {
+        int best = -1;
+        int bestRank = -1;
+        for (int row = 0; row <= WASTE_ROW; row++)
+        {
+            for (int to = 0; to < TARGET_COUNT; to++)
+            {
+                int count = counts[row][to];
+                if (count == 0)
+                {
+                    continue;
+                }
+                int rank = rank(row, to, count);
+                if (rank > bestRank)
+                {
+                    bestRank = rank;
+                    best = Move.make(row == WASTE_ROW ? KlondikeState.WASTE : row, to, count);
+                }
+            }
+        }
+        if (bestRank > 0)
+        {
+            return best;
+        }
+        if (state.getStockSize() > 0)
+        {
+            return Move.draw();
+        }
+        return state.getWasteSize() > 0 ? Move.recycle(state.getWasteSize()) : best;
+    }
+    /**
+     * @param row the source row
+     * @param to the target pile
+     * @param count the number of cards moved
+     * @return how useful the move is, 0 if it is pointless
+     */
+    private int rank(int row, int to, int count)
+    {
+        if (to >= KlondikeState.SUIT_PILE_0)
+        {
+            return 4;
+        }
+        if (row == WASTE_ROW)
+        {
+            return 2;
+        }
+        int size = state.getMainSize(row);
+        int faceDown = state.getMainFaceDown(row);
+        if (size - count == faceDown && faceDown > 0)
+        {
+            return 3;
+        }
+        if (size == count && state.getMainSize(to) == 0)
+        {
+            return 0;
+        }
+        if (size - count > faceDown)
+        {
+            return canGoToSuitPile(state.getMainCard(row, size - count - 1)) ? 1 : 0;
+        }
+        return 1;
+    }
+    /**
+     * @param code a card code
+     * @return whether the card can go on one of the suit piles
+     */
+    private boolean canGoToSuitPile(int code)
+    {
+        for (int to = KlondikeState.SUIT_PILE_0; to < KlondikeState.WASTE; to++)
+        {
+            if (CardCode.canStackOnSuit(code, state.getTopCode(to)))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+    /**
+     * Recomputes the pairs of a pile, as a source and as a target
+     * @param pile the KlondikeState pile number
+     */
+    private void refreshPile(int pile)
+    {
+        if (pile < KlondikeState.SUIT_PILE_0)
+        {
+            refreshRow(pile);
+            refreshColumn(pile);
+        }
+        else if (pile < KlondikeState.WASTE)
+        {
+            refreshColumn(pile);
+        }
+        else
+        {
+            refreshRow(WASTE_ROW);
+        }
+    }
+    /**
+     * @param row the source row
+     */
+    private void refreshRow(int row)
+    {
+        for (int to = 0; to < TARGET_COUNT; to++)
+        {
+            set(row, to);
+        }
+    }
+    /**
+     * @param to the target pile
+     */
+    private void refreshColumn(int to)
+    {
+        for (int row = 0; row <= WASTE_ROW; row++)
+        {
+            set(row, to);
+        }
+    }
+    /**
+     * Recomputes one pair
+     * @param row the source row
+     * @param to the target pile
+     */
+    private void set(int row, int to)
+    {
+        int count = count(row, to);
+        legalCount += (count != 0 ? 1 : 0) - (counts[row][to] != 0 ? 1 : 0);
+        counts[row][to] = (byte) count;
+    }
+    /**
+     * @param row the source row
+     * @param to the target pile
+     * @return the number of cards of the legal move from the source to the target, or 0
+     */
+    private int count(int row, int to)
+    {
+        int from = row == WASTE_ROW ? KlondikeState.WASTE : row;
+        int source = tops[from];
+        if (source == CardCode.NONE || from == to)
+        {
+            return 0;
+        }
+        int target = tops[to];
+        if (to >= KlondikeState.SUIT_PILE_0)
+        {
+            return CardCode.canStackOnSuit(source, target) ? 1 : 0;
+        }
+        int face = target == CardCode.NONE ? CardCode.KING : CardCode.face(target) - 1;
+        int count = face - CardCode.face(source) + 1;
+        if (count < 1 || count > runs[row])
+        {
+            return 0;
+        }
+        // colors alternate along the run, so the card moved has the color of the top card when count is odd
+        boolean red = CardCode.isRed(source) == ((count & 1) == 1);
+        return target == CardCode.NONE || red != CardCode.isRed(target) ? count : 0;
+    }
+    /**
+     * Reads the top card and the run of a pile from the state
+     * @param pile the KlondikeState pile number
+     */
+    private void readPile(int pile)
+    {
+        tops[pile] = state.getTopCode(pile);
+        if (pile < KlondikeState.SUIT_PILE_0)
+        {
+            runs[pile] = state.getMainSize(pile) - state.getMainFaceDown(pile);
+        }
+        else if (pile == KlondikeState.WASTE)
+        {
+            runs[WASTE_ROW] = tops[pile] == CardCode.NONE ? 0 : 1;
+        }
+    }
+}
@@ -1,6 +1,6 @@
 import java.awt.Color;
 import java.awt.Graphics;
-import java.awt.event.MouseEvent;
+import java.awt.Rectangle;
 import java.util.ArrayList;
 
 
@@ -39,65 +39,116 @@ public class Pile {
      */
     private final int type;
     /**
-     * The x and y locations of the pile. Though these are not final, they should NEVER change
+     * The x and y locations of the pile. They only change with the layout of the table (see setLayout)
      */
     private int xLocation, yLocation;
     /**
      * The width of the pile. It will always be the width of a card
      */
-    private final int width;
+    private int width;
     /**
      * The height of a pile. It will change as cards are added to the pile
      */
     private int height;
+    /**
+     * The height of a card
+     */
+    private int cardHeight;
     /**
      * Vertical space between cards in a pile. This only applies for cards in a MAIN_PILE or TEMP_PILE
      */
-    public static final int VERTICAL_SPACE = 22;
+    private int verticalSpace;
     /**
      * Horizontal space between cards. This only applies for cards in a DECK_PILE
      */
-    public static final int HORIZONTAL_SPACE = 26;
+    private int horizontalSpace;
     /**
      * The top card in a deck pile. This is necessary because only one can be drawn in a deck pile.
      */
     private Card deckPileTopCard;
     /**
-     * Constructs a new pile of cards with an x location and a y location of (x,y)
+     * Index of the first card lifted off the pile by a drag, or -1 if no card is lifted. Lifted
+     * cards stay in the pile but are drawn by the DragSlice instead of the pile.
+     */
+    private int liftedFrom;
+    /**
+     * Number of times the cards drawn by the pile changed: cards added, removed, lifted or put
+     * back. GamePanel compares it to know when its cached image of the table is out of date.
+     */
+    private int modCount;
+    /**
+     * Constructs a new pile of cards with an x location and a y location of (x,y), on a table of
+     * the reference size
      * @param x the x location of the pile
      * @param y the y location of the pile
      * @param t the type of the pile
      */
     public Pile(int x, int y, int t) {
+        this(x, y, t, TableLayout.DEFAULT);
+    }
+    /**
+     * Constructs a new pile of cards with an x location and a y location of (x,y)
+     * @param x the x location of the pile
+     * @param y the y location of the pile
+     * @param t the type of the pile
+     * @param layout the layout of the table, which gives the size of the cards and the space between them
+     */
+    public Pile(int x, int y, int t, TableLayout layout) {
         pile   = new ArrayList<Card>();
-        xLocation   = x;
-        yLocation   = y;
-        width  = Card.WIDTH;
-        height = Card.HEIGHT;
         if (t != SUIT_PILE && t != MAIN_PILE && t != DECK_PILE)
             type = TEMP_PILE;
         else
             type = t;
-        deckPileTopCard = (type == DECK_PILE) ? new Card() : null;
+        setLayout(x, y, layout);
+    }
+    /**
+     * Moves the pile and sizes it for a layout of the table. The pile is emptied, and the cards
+     * have to be added again, with their size already set for the layout.
+     * @param x the x location of the pile
+     * @param y the y location of the pile
+     * @param layout the layout of the table
+     */
+    public void setLayout(int x, int y, TableLayout layout) {
+        xLocation       = x;
+        yLocation       = y;
+        width           = layout.getCardWidth();
+        cardHeight      = layout.getCardHeight();
+        verticalSpace   = layout.getFanSpace();
+        horizontalSpace = layout.getWasteSpace();
+        clear();
     }
     /**
-     * Draws the pile of cards
+     * Draws the pile of cards, except the cards lifted off it
      * @param graphic the graphics context to draw on
      */
     public void draw(Graphics graphic) {
-        if (pile.size() == 0 && type != DECK_PILE) {
+        int count = liftedFrom < 0 ? pile.size() : liftedFrom;
+        if (count == 0 && type != DECK_PILE) {
             graphic.setColor(Color.white);
-            graphic.drawRoundRect(xLocation, yLocation, Card.WIDTH, Card.HEIGHT, 10, 10);
+            graphic.drawRoundRect(xLocation, yLocation, width, cardHeight, 10, 10);
             return;
         }
 
         if (type == DECK_PILE) {
-            if(deckPileTopCard!=null)
+            if (liftedFrom > 0)
             {
-                deckPileTopCard.draw(graphic);
+                pile.get(liftedFrom - 1).drawAt(graphic, xLocation + horizontalSpace, yLocation);
+            }
+            else if(deckPileTopCard!=null && liftedFrom < 0)
+            {
+                // the card under the ones flying to the waste shows until they land
+                int top = pile.size() - 1;
+                while (top >= 0 && pile.get(top).isInFlight())
+                {
+                    top--;
+                }
+                if (top >= 0)
+                {
+                    pile.get(top).drawAt(graphic, xLocation + horizontalSpace, yLocation);
+                }
             }
         } else {
-            for (int i = 0; i < pile.size(); i++) {
+            for (int i = 0; i < count; i++) {
                 pile.get(i).draw(graphic);
             }
         }
@@ -108,10 +159,11 @@ public class Pile {
      * @param card the card to add
      */
     public void addToPile(Card card) {
+        modCount++;
         if (card != null) pile.add(card);
         if (type != SUIT_PILE && type != DECK_PILE) {
-            card.setLocation(xLocation, yLocation + pile.indexOf(card) * VERTICAL_SPACE);
-            if (pile.size() > 1) height += VERTICAL_SPACE;
+            card.setLocation(xLocation, yLocation + (pile.size() - 1) * verticalSpace);
+            if (pile.size() > 1) height += verticalSpace;
         } else if (type == SUIT_PILE){
             card.setLocation(xLocation, yLocation);
         } else if (type == DECK_PILE) {
@@ -120,16 +172,14 @@ public class Pile {
         }
     }
     /**
-     * Adds a pile to the pile and sets its location appropriately
-     * @param p the pile to add
+     * Removes every card from the pile
      */
-    public void addToPile(Pile p) {
-        if (this.type == MAIN_PILE) {
-            for (int i = 0; i < p.getSize(); i++) {
-                this.addToPile(p.getCardAt(i));
-            }
-        }
-
+    public void clear() {
+        modCount++;
+        pile.clear();
+        height = cardHeight;
+        deckPileTopCard = null;
+        liftedFrom = -1;
     }
     /**
      * @return the card at index i or null if i is out of bounds
@@ -146,64 +196,44 @@ public class Pile {
         return (i >= 0 && i < pile.size());
     }
     /**
-     * Returns the pile that has been clicked, if any. If only one card has been clicked, the pile
-     * will simply contain a single card
-     * @param event the mouse event to check
-     * @return the pile that was clicked or null if the pile was not clicked
+     * Lifts the cards from an index to the top of the pile, so the pile stops drawing them while
+     * they are dragged. The cards stay in the pile.
+     * @param i the index of the first card to lift
      */
-    public Pile pileHasBeenClicked(MouseEvent event) {
-        if (type == DECK_PILE) {
-            Card card = this.getCardOnTop();
-            if (card != null) {
-                if ((event.getX() >= card.getcornerX() && event.getX() <= card.getcornerX() + Card.WIDTH) &&
-                        (event.getY() >= card.getcornerY() && event.getY() <= card.getcornerY() + Card.HEIGHT))
-                    return this.getPileAt(this.getSize() - 1);
-            }
-            return null;
-        }
-        if(type==SUIT_PILE)
-        {
-            return null;
+    public void lift(int i) {
+        if (inBounds(i)) {
+            modCount++;
+            liftedFrom = i;
         }
-        if (event.getX() < this.xLocation || event.getX() > this.xLocation + this.width)
-            return null;
-
-        if (this.getSize() == 0 && (event.getY() >= this.yLocation && event.getY() <= this.yLocation + this.height))
-            return this;
-
-        for (int i = 0; i < this.getSize() - 1; i++) {
-            Card c = this.getCardAt(i);
-            if (event.getY() >= c.getcornerY() && event.getY() <= c.getcornerY() + VERTICAL_SPACE && !c.faceDown) {
-                return this.getPileAt(i);
-            }
-        }
-        if (this.getSize() > 0) {
-            Card card = this.getCardOnTop();
-            if (event.getY() >= card.getcornerY() && event.getY() <= card.getBottomY() && !card.faceDown)
-                return this.getPileAt(this.getSize() - 1);
-        }
-        return null;
     }
     /**
-     * Returns a pile of cards from the passed in index to the end of this pile
-     * @param i the index to start at
-     * @return a pile of cards from the index i to the end of this pile
+     * Puts the lifted cards back, or does nothing if no card is lifted
      */
-    public Pile getPileAt(int i) {
-        Pile pile = new Pile(this.getCardAt(i).getcornerX(), this.getCardAt(i).getcornerY(), TEMP_PILE);
-        while (i < this.getSize()) {
-            pile.addToPile(this.getCardAt(i));
-            this.removeCardAt(i);
+    public void putBack() {
+        if (liftedFrom >= 0) {
+            modCount++;
+            liftedFrom = -1;
         }
-        return pile;
     }
     /**
      * Removes the card at index i from the deck or does nothing if the index is out of bounds
      * @param i the index to remove
      */
     public void removeCardAt(int i) {
-        if (inBounds(i))
+        if (inBounds(i)) {
+            modCount++;
             pile.remove(i);
+            if ((type == MAIN_PILE || type == TEMP_PILE) && pile.size() > 0) height -= verticalSpace;
+            if (type == DECK_PILE) {
+                updateDeckPileTopCard();
+            }
+        }
+    }
+    /**
+     * @return the number of times cards have been added to or removed from the pile
+     */
+    public int getModCount() {
+        return modCount;
     }
     /**
      * @return the card on top of the pile or null if there are no cards in the pile
@@ -215,89 +245,79 @@ public class Pile {
         return null;
     }
     /**
-     * @return the card at the first position of the pile
+     * @return the code of the card on top of the pile or CardCode.NONE if there are no cards in the pile
      */
-    public Card getCardOnBottom() {
+    public int getCodeOnTop() {
         if (pile.size() > 0)
-            return pile.get(0);
-        return null;
+            return pile.get(pile.size() - 1).getCode();
+
+        return CardCode.NONE;
     }
     /**
-     * Returns whether a card has been dropped on the pile
-     * @param card the card to check
-     * @return whether the card has been dropped on the pile
+     * @return the size of the pile
      */
-    public boolean droppedOnPile(Card card) {
-        return (((card.getcornerX() >= xLocation && card.getcornerX() <= xLocation + width)     && (card.getcornerY() >= yLocation && card.getcornerY() <= yLocation + height))             ||
-                ((card.getRightX() >= xLocation && card.getRightX() <= xLocation + width) && (card.getcornerY() >= yLocation && card.getcornerY() <= yLocation + height))             ||
-                ((card.getcornerX() >= xLocation && card.getcornerX() <= xLocation + width)           && (card.getBottomY() >= yLocation && card.getBottomY() <= yLocation + height)) ||
-                ((card.getRightX() >= xLocation && card.getRightX() <= xLocation + width) && (card.getBottomY() >= yLocation && card.getBottomY() <= yLocation + height)));
+    public int getSize() {
+        return pile.size();
     }
     /**
-     * Returns whether a pile has been dropped on this pile
-     * @param pile the pile to check
-     * @return whether p has been dropped on this pile
+     * Adds the area the pile is drawn on to a region, for repainting only what changed
+     * @param region the region to grow; an empty region (negative width) is replaced by the bounds
      */
-    public boolean droppedOnPile(Pile pile) {
-        if (pile.getSize() > 0) {
-            return droppedOnPile(pile.getCardAt(0));
+    public void addBoundsTo(Rectangle region) {
+        int right = xLocation + width + 1;
+        if (type == DECK_PILE) {
+            right += horizontalSpace;
         }
-        return false;
+        region.add(xLocation, yLocation);
+        region.add(right, yLocation + height + 1);
     }
     /**
-     * @return the size of the pile
+     * @return the height of the pile, from the top of its first card to the bottom of its last one
      */
-    public int getSize() {
-        return pile.size();
+    public int getHeight() {
+        return height;
     }
     /**
-     * @return the x location of the pile
+     * @return the width of a card of the pile
      */
-    public int getXlocation() {
-        return xLocation;
+    public int getCardWidth() {
+        return width;
     }
     /**
-     * @return the y location of the pile
+     * @return the height of a card of the pile
      */
-    public int getYlocation() {
-        return yLocation;
+    public int getCardHeight() {
+        return cardHeight;
     }
     /**
-     * Moves a TEMP_PILE. The method simply does nothing if the pile is not a TEMP_PILE.
-     * It also moves the x and y location of every card in the pile
-     * @param x the new x location of the pile
-     * @param y the new y location of the pile
+     * @return the vertical space between two cards of a main pile
      */
-    public void setLocation(int x, int y) {
-        if (type == TEMP_PILE) {
-            xLocation = x;
-            yLocation = y;
-            for (int i = 0; i < this.getSize(); i++) {
-                Card c = this.getCardAt(i);
-                c.setLocation(x, y + (i * VERTICAL_SPACE));
-            }
-        }
+    public int getVerticalSpace() {
+        return verticalSpace;
     }
     /**
-     * @return whether a pile is empty (size == 0) or not
+     * @return the horizontal space between the deck pile and its top card
      */
-    public boolean isEmpty() {
-        return this.getSize() == 0;
+    public int getHorizontalSpace() {
+        return horizontalSpace;
+    }
+    /**
+     * @return the x location of the pile
+     */
+    public int getXlocation() {
+        return xLocation;
     }
     /**
-     * Turns the top card of the pile up, or does nothing if the size is 0
+     * @return the y location of the pile
      */
-    public void turnTopCardUp() {
-        if (this.getSize() > 0)
-            this.getCardOnTop().faceDown = false;
+    public int getYlocation() {
+        return yLocation;
     }
     /**
-     * Turns all cards in the pile face up
+     * @return whether a pile is empty (size == 0) or not
      */
-    public void turnAllCardsUp() {
-        for (int i = 0; i < getSize(); i++) {
-            pile.get(i).faceDown = false;
-        }
+    public boolean isEmpty() {
+        return this.getSize() == 0;
     }
     /**
      * Updates the top card in the deck pile and adjusts its location
@@ -311,12 +331,12 @@ public class Pile {
         if (this.getSize() >= 1) {
             for (int i = this.getSize() - 1, j = 0; i < this.getSize(); i++, j++) {
                 deckPileTopCard = this.getCardAt(i);
-                deckPileTopCard.setLocation(xLocation + (HORIZONTAL_SPACE), yLocation);
+                deckPileTopCard.setLocation(xLocation + (horizontalSpace), yLocation);
             }
         } else {
             for (int i = 0; i < this.getSize(); i++) {
                 deckPileTopCard = this.getCardAt(i);
-                deckPileTopCard.setLocation(xLocation + (HORIZONTAL_SPACE), yLocation);
+                deckPileTopCard.setLocation(xLocation + (horizontalSpace), yLocation);
             }
         }
     }
@@ -0,0 +1,291 @@
+import java.util.Arrays;
+
+public final class PileIndex
+{
+    /**
+     * PileIndex.java
+     * A grid over the table that tells which pile is under a point and which piles a dragged card
+     * overlaps, without going through every pile and every card. Every cell of the grid lists the
+     * piles that can reach it, so a lookup only checks the one or two piles of the cells it covers.
+     *
+     * Piles are numbered like in KlondikeState (main piles, then suit piles, then the waste). A main
+     * pile is listed in every cell down to the tallest it can grow, so adding and removing cards never
+     * changes the grid; the grid is only built again after invalidate, when the piles are laid out.
+     * For the waste only its top card counts, since it is the only one that can be picked up.
+     */
+    private static final int PILE_COUNT = KlondikeState.WASTE + 1;
+    /**
+     * Number of piles a cell can list. When a cell would need more, the cells are made smaller.
+     */
+    private static final int SLOTS_PER_CELL = 4;
+    /**
+     * Initial side of a cell in pixels, a bit less than the space between two piles
+     */
+    private static final int CELL_SIZE = 32;
+
+    private final Pile[] mainPiles;
+    private final Pile[] suitPiles;
+    private final Pile   deckPile;
+
+    private int cellSize;
+    private int columns, rows;
+    /**
+     * SLOTS_PER_CELL pile numbers per cell, row by row; unused slots hold -1
+     */
+    private byte[] cells = new byte[0];
+    private boolean built;
+    /**
+     * Overlap area of every pile with the card being dropped, used while ranking drop targets
+     */
+    private final int[] overlap = new int[PILE_COUNT];
+
+    /**
+     * Constructs the index of the piles of a game panel. The arrays are read again when the grid
+     * is built, so piles replaced in them are picked up after invalidate.
+     * @param mainPiles the main piles
+     * @param suitPiles the suit piles
+     * @param deckPile the pile of cards drawn from the deck
+     */
+    public PileIndex(Pile[] mainPiles, Pile[] suitPiles, Pile deckPile)
+    {
+        this.mainPiles = mainPiles;
+        this.suitPiles = suitPiles;
+        this.deckPile  = deckPile;
+    }
+    /**
+     * Tells the index that piles were replaced or moved, so the grid is built again before the
+     * next lookup
+     */
+    public void invalidate()
+    {
+        built = false;
+    }
+    /**
+     * @param pileId a pile number of KlondikeState, from MAIN_PILE_0 to WASTE
+     * @return the view of that pile
+     */
+    public Pile getPile(int pileId)
+    {
+        if (pileId < KlondikeState.SUIT_PILE_0)
+        {
+            return mainPiles[pileId - KlondikeState.MAIN_PILE_0];
+        }
+        if (pileId < KlondikeState.WASTE)
+        {
+            return suitPiles[pileId - KlondikeState.SUIT_PILE_0];
+        }
+        return deckPile;
+    }
+    /**
+     * Returns the pile under a point
+     * @param x the x coordinate of the point
+     * @param y the y coordinate of the point
+     * @return the KlondikeState number of the pile, or -1 if there is no pile there
+     */
+    public int pileAt(int x, int y)
+    {
+        if (!built)
+        {
+            build();
+        }
+        if (x < 0 || y < 0 || x >= columns * cellSize || y >= rows * cellSize)
+        {
+            return -1;
+        }
+        int base = ((y / cellSize) * columns + x / cellSize) * SLOTS_PER_CELL;
+        for (int i = base; i < base + SLOTS_PER_CELL && cells[i] >= 0; i++)
+        {
+            int pileId = cells[i];
+            if (overlap(pileId, x, y, x + 1, y + 1) > 0)
+            {
+                return pileId;
+            }
+        }
+        return -1;
+    }
+    /**
+     * Returns the card of a pile that can be picked up at a point
+     * @param pileId the pile under the point, as returned by pileAt
+     * @param y the y coordinate of the point
+     * @return the index of the card in the pile, or -1 if no card can be picked up there
+     */
+    public int cardIndexAt(int pileId, int y)
+    {
+        Pile pile = getPile(pileId);
+        if (pile.isEmpty() || (pileId >= KlondikeState.SUIT_PILE_0 && pileId < KlondikeState.WASTE))
+        {
+            return -1;
+        }
+        if (pileId == KlondikeState.WASTE)
+        {
+            return pile.getSize() - 1;
+        }
+        int index = Math.min((y - pile.getYlocation()) / pile.getVerticalSpace(), pile.getSize() - 1);
+        return pile.getCardAt(index).faceDown ? -1 : index;
+    }
+    /**
+     * Finds the piles a card overlaps when it is dropped, the pile it overlaps the most first. The
+     * waste is never a drop target.
+     * @param x the x location of the card
+     * @param y the y location of the card
+     * @param targets receives the KlondikeState numbers of the piles; needs room for every pile
+     * @return the number of piles written to targets
+     */
+    public int dropTargets(int x, int y, int[] targets)
+    {
+        if (!built)
+        {
+            build();
+        }
+        int cardRight = x + deckPile.getCardWidth() + 1;
+        int cardBottom = y + deckPile.getCardHeight() + 1;
+        int lastColumn = Math.min(columns - 1, (cardRight - 1) / cellSize);
+        int lastRow = Math.min(rows - 1, (cardBottom - 1) / cellSize);
+        int count = 0;
+        for (int row = Math.max(0, y / cellSize); row <= lastRow; row++)
+        {
+            for (int column = Math.max(0, x / cellSize); column <= lastColumn; column++)
+            {
+                int base = (row * columns + column) * SLOTS_PER_CELL;
+                for (int i = base; i < base + SLOTS_PER_CELL && cells[i] >= 0; i++)
+                {
+                    int pileId = cells[i];
+                    if (pileId == KlondikeState.WASTE || overlap[pileId] != 0)
+                    {
+                        continue;
+                    }
+                    int area = overlap(pileId, x, y, cardRight, cardBottom);
+                    if (area <= 0)
+                    {
+                        continue;
+                    }
+                    overlap[pileId] = area;
+                    int j = count++;
+                    while (j > 0 && overlap[targets[j - 1]] < area)
+                    {
+                        targets[j] = targets[j - 1];
+                        j--;
+                    }
+                    targets[j] = pileId;
+                }
+            }
+        }
+        for (int i = 0; i < count; i++)
+        {
+            overlap[targets[i]] = 0;
+        }
+        return count;
+    }
+    /**
+     * Returns the area a rectangle has in common with a pile as it is now
+     * @param pileId the pile
+     * @param left the left side of the rectangle
+     * @param top the top side of the rectangle
+     * @param right the right side of the rectangle, exclusive
+     * @param bottom the bottom side of the rectangle, exclusive
+     * @return the area in common, 0 if there is none
+     */
+    private int overlap(int pileId, int left, int top, int right, int bottom)
+    {
+        Pile pile = getPile(pileId);
+        int x = pile.getXlocation();
+        int y = pile.getYlocation();
+        int height = pile.getHeight();
+        if (pileId == KlondikeState.WASTE)
+        {
+            if (pile.isEmpty())
+            {
+                return 0;
+            }
+            x += pile.getHorizontalSpace();
+            height = pile.getCardHeight();
+        }
+        int width = Math.min(right, x + pile.getCardWidth() + 1) - Math.max(left, x);
+        height = Math.min(bottom, y + height + 1) - Math.max(top, y);
+        return width <= 0 || height <= 0 ? 0 : width * height;
+    }
+    /**
+     * Builds the grid, making the cells smaller until no cell has to list too many piles
+     */
+    private void build()
+    {
+        cellSize = CELL_SIZE;
+        while (!fill())
+        {
+            if (cellSize == 1)
+            {
+                throw new IllegalStateException("Too many piles on top of each other");
+            }
+            cellSize /= 2;
+        }
+        built = true;
+    }
+    /**
+     * Lists every pile in the cells it can reach
+     * @return false if a cell has more piles than it can list
+     */
+    private boolean fill()
+    {
+        int width = 0, height = 0;
+        for (int pileId = 0; pileId < PILE_COUNT; pileId++)
+        {
+            width = Math.max(width, reachRight(pileId));
+            height = Math.max(height, reachBottom(pileId));
+        }
+        columns = (width + cellSize - 1) / cellSize;
+        rows = (height + cellSize - 1) / cellSize;
+        int length = columns * rows * SLOTS_PER_CELL;
+        if (cells.length < length)
+        {
+            cells = new byte[length];
+        }
+        Arrays.fill(cells, 0, length, (byte) -1);
+        for (int pileId = 0; pileId < PILE_COUNT; pileId++)
+        {
+            Pile pile = getPile(pileId);
+            int left = pileId == KlondikeState.WASTE ? pile.getXlocation() + pile.getHorizontalSpace() : pile.getXlocation();
+            for (int row = Math.max(0, pile.getYlocation()) / cellSize; row <= (reachBottom(pileId) - 1) / cellSize; row++)
+            {
+                for (int column = Math.max(0, left) / cellSize; column <= (reachRight(pileId) - 1) / cellSize; column++)
+                {
+                    int base = (row * columns + column) * SLOTS_PER_CELL;
+                    int slot = base;
+                    while (slot < base + SLOTS_PER_CELL && cells[slot] >= 0)
+                    {
+                        slot++;
+                    }
+                    if (slot == base + SLOTS_PER_CELL)
+                    {
+                        return false;
+                    }
+                    cells[slot] = (byte) pileId;
+                }
+            }
+        }
+        return true;
+    }
+    /**
+     * @param pileId the pile
+     * @return the right side, exclusive, of the area the pile can ever cover
+     */
+    private int reachRight(int pileId)
+    {
+        Pile pile = getPile(pileId);
+        int right = pile.getXlocation() + pile.getCardWidth() + 1;
+        return pileId == KlondikeState.WASTE ? right + pile.getHorizontalSpace() : right;
+    }
+    /**
+     * @param pileId the pile
+     * @return the bottom side, exclusive, of the area the pile can ever cover
+     */
+    private int reachBottom(int pileId)
+    {
+        Pile pile = getPile(pileId);
+        int bottom = pile.getYlocation() + pile.getCardHeight() + 1;
+        if (pileId < KlondikeState.SUIT_PILE_0)
+        {
+            bottom += (KlondikeState.MAIN_PILE_CAPACITY - 1) * pile.getVerticalSpace();
+        }
+        return bottom;
+    }
+}
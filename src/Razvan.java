@@ -1,9 +1,6 @@
 import java.awt.*;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
-import javax.imageio.ImageIO;
 
 public class Razvan
 {
@@ -15,9 +12,10 @@ public class Razvan
     private BufferedImage image;
 
     private int xLocation,yLocation;
-
-    private static final int WIDTH=64;
-    private static final int HEIGHT=64;
+    /**
+     * The size the image is drawn at, which follows the TableLayout of the panel
+     */
+    private int size=TableLayout.RAZVAN_SIZE;
     /**
      * Constructor that initialize the object at x location, y location and the image
      * @param x the x location of the object
@@ -29,16 +27,18 @@ public class Razvan
         initImage();
     }
     /**
-     * Initializes the image of the object
+     * Initializes the image of the object, once the images are decoded
      */
     void initImage()
     {
-        try
+        SpriteSheet sheet=AssetLoader.getLoadedSheet();
+        if(sheet!=null)
         {
-            image=ImageIO.read(new File("images/Razvan.png"));
-        } catch(IOException ioException)
-        {
-            System.out.println("Error reading the image");
+            image=sheet.getImage("Razvan.png");
+            if(image==null)
+            {
+                System.out.println("Error reading the image");
+            }
         }
     }
     /**
@@ -51,13 +51,43 @@ public class Razvan
         xLocation = x;
         yLocation = y;
     }
+    /**
+     * Moves and sizes the object for a layout of the table
+     * @param layout the layout of the table
+     */
+    public void setLayout(TableLayout layout)
+    {
+        setLocation(layout.x(TableLayout.RAZVAN_X),layout.y(TableLayout.RAZVAN_Y));
+        size=layout.length(TableLayout.RAZVAN_SIZE);
+    }
+    /**
+     * @return the image of the object, or null if the images are not decoded yet
+     */
+    BufferedImage getImage()
+    {
+        if(image==null)
+        {
+            initImage();
+        }
+        return image;
+    }
+    /**
+     * @return the size the object is drawn at
+     */
+    public int getSize()
+    {
+        return size;
+    }
     /**
      * Draws the object
      * @param graphic the graphics context to draw the object on
      */
     void draw(Graphics graphic)
     {
-        graphic.drawImage(image,xLocation,yLocation,null);
+        if(getImage()!=null)
+        {
+            ScaledImageCache.draw(graphic,image,xLocation,yLocation,size,size);
+        }
     }
 
     /**
@@ -66,8 +96,8 @@ public class Razvan
      * @return the object that was clicked or null if the object wasn't clicked
      */
     public boolean hasBeenClicked(MouseEvent event) {
-        return (event.getX() >= xLocation && event.getX() <= xLocation + WIDTH) &&
-                (event.getY() >= yLocation && event.getY() <= yLocation + HEIGHT);
+        return (event.getX() >= xLocation && event.getX() <= xLocation + size) &&
+                (event.getY() >= yLocation && event.getY() <= yLocation + size);
     }
 }
 
@@ -0,0 +1,205 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+public final class SavedGame
+{
+    /**
+     * SavedGame.java
+     * A game in progress in a compact binary form, to save it and resume it later. The format
+     * starts with the magic "KLS1" and a version byte, followed by the level (as written by
+     * DataOutputStream.writeUTF), the deal number, the position as written by KlondikeState.writeTo
+     * (one byte per card), the score, the time played in milliseconds and the moves played, as
+     * written by MoveLog.writeTo, so undo still works after the game is resumed. It ends with the
+     * CRC-32 of everything before it. A saved game is about a hundred bytes plus two bytes per move.
+     *
+     * Decoding checks everything: the position must be valid, and replaying the moves from the
+     * deal must lead to it. This class does not depend on AWT or Swing.
+     */
+    public static final int MAGIC = 0x4B4C5331;
+    public static final int VERSION = 1;
+
+    private final KlondikeDeal deal;
+    private final KlondikeState state;
+    private final MoveLog moveLog;
+    private final int score;
+    private final long elapsedMillis;
+
+    private SavedGame(KlondikeDeal deal, KlondikeState state, MoveLog moveLog, int score, long elapsedMillis)
+    {
+        this.deal = deal;
+        this.state = state;
+        this.moveLog = moveLog;
+        this.score = score;
+        this.elapsedMillis = elapsedMillis;
+    }
+    /**
+     * Saves a game
+     * @param deal the deal being played
+     * @param state the position reached
+     * @param moveLog the moves that led from the deal to the position
+     * @param score the score
+     * @param elapsedMillis the time played
+     * @return the saved game, as bytes
+     */
+    public static byte[] encode(KlondikeDeal deal, KlondikeState state, MoveLog moveLog, int score, long elapsedMillis)
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128 + 2 * moveLog.getSize());
+        DataOutputStream out = new DataOutputStream(bytes);
+        try
+        {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeUTF(deal.getLevel());
+            out.writeLong(deal.getDealNumber());
+            state.writeTo(out);
+            out.writeInt(score);
+            out.writeLong(elapsedMillis);
+            moveLog.writeTo(out);
+            out.writeInt(checksum(bytes.toByteArray(), bytes.size()));
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Writing to memory failed", e);
+        }
+        return bytes.toByteArray();
+    }
+    /**
+     * Reads a saved game
+     * @param saved the bytes returned by encode
+     * @return the game
+     * @throws IOException if the bytes are not a valid saved game
+     */
+    public static SavedGame decode(byte[] saved) throws IOException
+    {
+        if (saved.length < 4)
+        {
+            throw new IOException("Truncated saved game");
+        }
+        int length = saved.length - 4;
+        int checksum = ((saved[length] & 0xFF) << 24) | ((saved[length + 1] & 0xFF) << 16)
+                | ((saved[length + 2] & 0xFF) << 8) | (saved[length + 3] & 0xFF);
+        if (checksum != checksum(saved, length))
+        {
+            throw new IOException("Corrupt saved game");
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(saved, 0, length));
+        try
+        {
+            if (in.readInt() != MAGIC)
+            {
+                throw new IOException("Not a saved game");
+            }
+            int version = in.readUnsignedByte();
+            if (version != VERSION)
+            {
+                throw new IOException("Unsupported saved game version " + version);
+            }
+            String level = in.readUTF();
+            if (!level.equals("level1") && !level.equals("level2"))
+            {
+                throw new IOException("Unknown level " + level);
+            }
+            KlondikeDeal deal = KlondikeDeal.fromNumber(level, in.readLong());
+            KlondikeState state = new KlondikeState(deal);
+            state.readFrom(in);
+            int score = in.readInt();
+            long elapsedMillis = in.readLong();
+            MoveLog moveLog = new MoveLog();
+            moveLog.readFrom(in);
+            if (in.read() != -1)
+            {
+                throw new IOException("Unexpected data after the saved game");
+            }
+            if (score < 0 || elapsedMillis < 0)
+            {
+                throw new IOException("Negative score or time");
+            }
+            checkMoves(deal, state, moveLog);
+            return new SavedGame(deal, state, moveLog, score, elapsedMillis);
+        }
+        catch (EOFException e)
+        {
+            throw new IOException("Truncated saved game", e);
+        }
+    }
+    /**
+     * @param bytes the bytes
+     * @param length the number of bytes to check, from the first one
+     * @return the CRC-32 of the bytes
+     */
+    private static int checksum(byte[] bytes, int length)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+    /**
+     * Replays the moves of a saved game from its deal, checking that every move is legal, that
+     * the played moves lead to the saved position and that the undone ones can be redone from it
+     * @param deal the deal
+     * @param state the saved position
+     * @param moveLog the saved moves
+     * @throws IOException if the moves do not match the position
+     */
+    private static void checkMoves(KlondikeDeal deal, KlondikeState state, MoveLog moveLog) throws IOException
+    {
+        KlondikeState replay = new KlondikeState(deal);
+        for (int i = 0; i < moveLog.getSize(); i++)
+        {
+            if (i == moveLog.getCursor() && replay.getHash() != state.getHash())
+            {
+                throw new IOException("The moves do not lead to the saved position");
+            }
+            int move = moveLog.getMove(i);
+            if ((move & ~(Move.MOVE_MASK | Move.FLIP)) != 0 || !replay.isLegal(move & Move.MOVE_MASK)
+                    || replay.apply(move & Move.MOVE_MASK) != move)
+            {
+                throw new IOException("Invalid move " + i + " in the saved game");
+            }
+        }
+        if (moveLog.getCursor() == moveLog.getSize() && replay.getHash() != state.getHash())
+        {
+            throw new IOException("The moves do not lead to the saved position");
+        }
+    }
+    /**
+     * @return the deal being played
+     */
+    public KlondikeDeal getDeal()
+    {
+        return deal;
+    }
+    /**
+     * @return the position reached
+     */
+    public KlondikeState getState()
+    {
+        return state;
+    }
+    /**
+     * @return the moves that led from the deal to the position
+     */
+    public MoveLog getMoveLog()
+    {
+        return moveLog;
+    }
+    /**
+     * @return the score
+     */
+    public int getScore()
+    {
+        return score;
+    }
+    /**
+     * @return the time played, in milliseconds
+     */
+    public long getElapsedMillis()
+    {
+        return elapsedMillis;
+    }
+}
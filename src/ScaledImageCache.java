@@ -0,0 +1,249 @@
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.SwingUtilities;
+
+public final class ScaledImageCache
+{
+    /**
+     * ScaledImageCache.java
+     * The images of the game scaled in advance to the size they are drawn at, so a paint only
+     * copies pixels one to one instead of scaling every image of every frame. The images are
+     * grouped by their size in device pixels; when the panel is resized GamePanel asks for the
+     * new sizes with prepare, which scales them once on the AssetLoader threads, off the Event
+     * Dispatch Thread. Until they are ready draw scales the original image, fast and rough.
+     *
+     * An image drawn at its own size on a screen without scaling, the table at its reference size,
+     * is drawn as it is and never goes through the cache. Only the last MAX_SIZES sizes are kept.
+     * The cache is replaced as a whole when scaled images are added, so draw reads it without a lock.
+     */
+    /**
+     * Number of sizes kept: the cards and Razvan, for the current layout and the one before
+     */
+    private static final int MAX_SIZES = 4;
+    /**
+     * The images are scaled down by at most half at a time, or bicubic scaling skips pixels
+     */
+    private static final int MAX_STEP = 2;
+
+    /**
+     * The scaled images by their size, packed by key, then by the original image
+     */
+    private static volatile Map<Long, Map<BufferedImage, BufferedImage>> sizes = Collections.emptyMap();
+    /**
+     * Counts the calls to prepare; a preparation stops once a later one is asked for
+     */
+    private static final AtomicInteger GENERATION = new AtomicInteger();
+
+    private ScaledImageCache()
+    {
+    }
+    /**
+     * Scales images in the background, skipping the ones already scaled. A later call stops the
+     * scaling asked by this one.
+     * @param targets the size in device pixels of every image to scale
+     * @param whenReady run on the Event Dispatch Thread once the images are scaled, unless the
+     *                  scaling was stopped
+     * @return whether scaling started, false if every image already was scaled
+     */
+    public static boolean prepare(Map<BufferedImage, Dimension> targets, final Runnable whenReady)
+    {
+        final int generation = GENERATION.incrementAndGet();
+        final Map<BufferedImage, Dimension> missing = new LinkedHashMap<BufferedImage, Dimension>();
+        for (Map.Entry<BufferedImage, Dimension> target : targets.entrySet())
+        {
+            BufferedImage source = target.getKey();
+            Dimension size = target.getValue();
+            if ((source.getWidth() != size.width || source.getHeight() != size.height)
+                    && find(source, size.width, size.height) == null)
+            {
+                missing.put(source, new Dimension(size));
+            }
+        }
+        if (missing.isEmpty())
+        {
+            return false;
+        }
+        AssetLoader.getExecutor().execute(new Runnable() {
+            public void run() {
+                Map<BufferedImage, BufferedImage> scaled = new HashMap<BufferedImage, BufferedImage>();
+                for (Map.Entry<BufferedImage, Dimension> target : missing.entrySet())
+                {
+                    if (GENERATION.get() != generation)
+                    {
+                        return;
+                    }
+                    scaled.put(target.getKey(), scale(target.getKey(), target.getValue().width, target.getValue().height));
+                }
+                publish(scaled);
+                SwingUtilities.invokeLater(whenReady);
+            }
+        });
+        return true;
+    }
+    /**
+     * Draws an image at a size, copying its scaled version if it is ready
+     * @param graphic the graphics context to draw on
+     * @param image the original image
+     * @param x the top-left x coordinate to draw the image at
+     * @param y the top-left y coordinate to draw the image at
+     * @param width the width to draw the image at
+     * @param height the height to draw the image at
+     */
+    public static void draw(Graphics graphic, BufferedImage image, int x, int y, int width, int height)
+    {
+        AffineTransform transform = ((Graphics2D) graphic).getTransform();
+        boolean scaled = (transform.getType() & ~AffineTransform.TYPE_TRANSLATION) != 0;
+        if (!scaled && width == image.getWidth() && height == image.getHeight())
+        {
+            graphic.drawImage(image, x, y, null);
+            return;
+        }
+        if (scaled && (transform.getType() & (AffineTransform.TYPE_FLIP | AffineTransform.TYPE_MASK_ROTATION)) != 0)
+        {
+            graphic.drawImage(image, x, y, width, height, null);
+            return;
+        }
+        int pixelWidth = (int) Math.round(width * transform.getScaleX());
+        int pixelHeight = (int) Math.round(height * transform.getScaleY());
+        BufferedImage ready = pixelWidth == image.getWidth() && pixelHeight == image.getHeight()
+                ? image : find(image, pixelWidth, pixelHeight);
+        if (ready == null)
+        {
+            graphic.drawImage(image, x, y, width, height, null);
+        }
+        else if (!scaled)
+        {
+            graphic.drawImage(ready, x, y, null);
+        }
+        else
+        {
+            drawPixels(graphic, ready, x, y);
+        }
+    }
+    /**
+     * Draws an image one image pixel per device pixel, with its top left corner at a point of the
+     * graphics context, whatever the scale of the context
+     * @param graphic the graphics context to draw on
+     * @param image the image, at the resolution of the device
+     * @param x the x coordinate of the top-left corner
+     * @param y the y coordinate of the top-left corner
+     */
+    public static void drawPixels(Graphics graphic, BufferedImage image, int x, int y)
+    {
+        Graphics2D graphic2D = (Graphics2D) graphic;
+        AffineTransform transform = graphic2D.getTransform();
+        if ((transform.getType() & ~AffineTransform.TYPE_TRANSLATION) == 0)
+        {
+            graphic.drawImage(image, x, y, null);
+            return;
+        }
+        double deviceX = transform.getTranslateX() + x * transform.getScaleX();
+        double deviceY = transform.getTranslateY() + y * transform.getScaleY();
+        graphic2D.setTransform(new AffineTransform());
+        graphic2D.drawImage(image, (int) Math.round(deviceX), (int) Math.round(deviceY), null);
+        graphic2D.setTransform(transform);
+    }
+    /**
+     * @param source an original image
+     * @param width the width of the scaled image
+     * @param height the height of the scaled image
+     * @return the image scaled to that size, or null if it is not ready
+     */
+    private static BufferedImage find(BufferedImage source, int width, int height)
+    {
+        Map<BufferedImage, BufferedImage> images = sizes.get(key(width, height));
+        return images == null ? null : images.get(source);
+    }
+    /**
+     * Adds scaled images to the cache, forgetting the sizes used the longest ago
+     * @param scaled the scaled images by their original
+     */
+    private static synchronized void publish(Map<BufferedImage, BufferedImage> scaled)
+    {
+        LinkedHashMap<Long, Map<BufferedImage, BufferedImage>> copy = new LinkedHashMap<Long, Map<BufferedImage, BufferedImage>>();
+        for (Map.Entry<Long, Map<BufferedImage, BufferedImage>> size : sizes.entrySet())
+        {
+            copy.put(size.getKey(), new HashMap<BufferedImage, BufferedImage>(size.getValue()));
+        }
+        for (Map.Entry<BufferedImage, BufferedImage> image : scaled.entrySet())
+        {
+            Long key = key(image.getValue().getWidth(), image.getValue().getHeight());
+            Map<BufferedImage, BufferedImage> images = copy.remove(key);
+            if (images == null)
+            {
+                images = new HashMap<BufferedImage, BufferedImage>();
+            }
+            images.put(image.getKey(), image.getValue());
+            copy.put(key, images);
+        }
+        Iterator<Long> oldest = copy.keySet().iterator();
+        while (copy.size() > MAX_SIZES)
+        {
+            oldest.next();
+            oldest.remove();
+        }
+        sizes = copy;
+    }
+    /**
+     * Scales an image with bicubic interpolation, in steps of at most MAX_STEP when it gets much
+     * smaller, and keeps it in the layout Java2D draws fastest
+     * @param source the image
+     * @param width the width of the scaled image
+     * @param height the height of the scaled image
+     * @return the scaled image
+     */
+    static BufferedImage scale(BufferedImage source, int width, int height)
+    {
+        BufferedImage image = source;
+        do
+        {
+            int stepWidth = Math.max(width, image.getWidth() / MAX_STEP);
+            int stepHeight = Math.max(height, image.getHeight() / MAX_STEP);
+            BufferedImage step = new BufferedImage(stepWidth, stepHeight, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D graphic = step.createGraphics();
+            graphic.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            graphic.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphic.drawImage(image, 0, 0, stepWidth, stepHeight, null);
+            graphic.dispose();
+            image = step;
+        }
+        while (image.getWidth() != width || image.getHeight() != height);
+        if (source.getTransparency() != Transparency.TRANSLUCENT)
+        {
+            // the original has no translucent pixel, so the scaled one keeps a one bit alpha
+            WritableRaster alphas = image.getAlphaRaster();
+            int[] row = new int[width];
+            for (int y = 0; y < height; y++)
+            {
+                alphas.getSamples(0, y, width, 1, 0, row);
+                for (int x = 0; x < width; x++)
+                {
+                    row[x] = row[x] < 0x80 ? 0 : 0xFF;
+                }
+                alphas.setSamples(0, y, width, 1, 0, row);
+            }
+        }
+        return SpriteSheet.toDrawable(image);
+    }
+    /**
+     * @param width a width in device pixels
+     * @param height a height in device pixels
+     * @return the key of that size in the cache
+     */
+    private static Long key(int width, int height)
+    {
+        return ((long) width << 32) | height;
+    }
+}
@@ -0,0 +1,278 @@
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DirectColorModel;
+import java.awt.image.WritableRaster;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.imageio.ImageIO;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+public final class SpriteSheet
+{
+    /**
+     * SpriteSheet.java
+     * The images of the game packed in a single image, with an index of where every image is.
+     * The game reads the sheet made by AssetPacker from the classpath (see AssetLoader), so it finds its images
+     * wherever it is launched from, also from a jar, and startup costs one image decode instead of
+     * one file open and decode per card. Every image is a sub-image of the sheet: it shares the
+     * pixels of the sheet and costs no copy.
+     *
+     * The index is a text file: a header line "sprites <version> <count>", then one line per image,
+     * "<name> <x> <y> <width> <height>", where the name is the path of the image relative to the
+     * images directory, for example "Frunza/as.gif".
+     */
+    /**
+     * Where the sheet and its index are on the classpath
+     */
+    public static final String RESOURCE_DIRECTORY = "/assets/";
+    public static final String IMAGE_NAME = "sprites.png";
+    public static final String INDEX_NAME = "sprites.idx";
+    public static final int VERSION = 1;
+    /**
+     * The directory of the loose images, packed at startup when the sheet is not on the classpath
+     */
+    public static final String IMAGE_DIRECTORY = "images";
+    /**
+     * Integer RGB with a one bit alpha
+     */
+    private static final DirectColorModel BITMASK_MODEL = new DirectColorModel(25, 0xFF0000, 0xFF00, 0xFF, 0x1000000);
+
+    private final BufferedImage sheet;
+    /**
+     * The names of the images, in the order of the index
+     */
+    private final List<String> names;
+    private final Map<String, Rectangle> areas;
+    private final Map<String, BufferedImage> images;
+
+    /**
+     * Constructs a sheet
+     * @param sheet the image every image is cut from
+     * @param names the names of the images
+     * @param areas where every image is in the sheet, in the order of the names
+     * @throws IllegalArgumentException if an area is outside the sheet or a name is used twice
+     */
+    SpriteSheet(BufferedImage sheet, List<String> names, List<Rectangle> areas)
+    {
+        Rectangle bounds = new Rectangle(sheet.getWidth(), sheet.getHeight());
+        this.sheet = sheet;
+        this.names = Collections.unmodifiableList(new ArrayList<String>(names));
+        this.areas = new HashMap<String, Rectangle>();
+        this.images = new HashMap<String, BufferedImage>();
+        for (int i = 0; i < names.size(); i++)
+        {
+            Rectangle area = areas.get(i);
+            if (area.isEmpty() || !bounds.contains(area))
+            {
+                throw new IllegalArgumentException("The image " + names.get(i) + " is outside the sheet");
+            }
+            if (this.areas.put(names.get(i), new Rectangle(area)) != null)
+            {
+                throw new IllegalArgumentException("The image " + names.get(i) + " is in the sheet twice");
+            }
+            images.put(names.get(i), sheet.getSubimage(area.x, area.y, area.width, area.height));
+        }
+    }
+    /**
+     * Reads the sheet and its index from the classpath
+     * @return the sheet, or null if it is not on the classpath
+     * @throws IOException if the sheet or its index can not be read or is not valid
+     */
+    public static SpriteSheet readResources() throws IOException
+    {
+        InputStream index = SpriteSheet.class.getResourceAsStream(RESOURCE_DIRECTORY + INDEX_NAME);
+        if (index == null)
+        {
+            return null;
+        }
+        InputStream image = SpriteSheet.class.getResourceAsStream(RESOURCE_DIRECTORY + IMAGE_NAME);
+        if (image == null)
+        {
+            index.close();
+            throw new IOException("The sprite sheet " + IMAGE_NAME + " is missing");
+        }
+        try
+        {
+            return read(index, image);
+        }
+        finally
+        {
+            index.close();
+            image.close();
+        }
+    }
+    /**
+     * Reads a sheet and its index
+     * @param index the index, as written by write
+     * @param image the sheet
+     * @return the sheet
+     * @throws IOException if the sheet or its index can not be read or is not valid
+     */
+    public static SpriteSheet read(InputStream index, InputStream image) throws IOException
+    {
+        List<String> names = new ArrayList<String>();
+        List<Rectangle> areas = new ArrayList<Rectangle>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(index, StandardCharsets.UTF_8));
+        String[] header = split(reader.readLine(), 3);
+        if (!header[0].equals("sprites") || parse(header[1]) != VERSION)
+        {
+            throw new IOException("Not a sprite index of version " + VERSION);
+        }
+        int count = parse(header[2]);
+        for (int i = 0; i < count; i++)
+        {
+            String[] fields = split(reader.readLine(), 5);
+            names.add(fields[0]);
+            areas.add(new Rectangle(parse(fields[1]), parse(fields[2]), parse(fields[3]), parse(fields[4])));
+        }
+        // the stream cache of ImageIO would copy the sheet to a temporary file first
+        BufferedImage sheet = ImageIO.read(new MemoryCacheImageInputStream(new BufferedInputStream(image)));
+        if (sheet == null)
+        {
+            throw new IOException("The sprite sheet is not an image");
+        }
+        try
+        {
+            return new SpriteSheet(toDrawable(sheet), names, areas);
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+    /**
+     * Writes the sheet and its index to a directory, as IMAGE_NAME and INDEX_NAME
+     * @param directory the directory, created if needed
+     */
+    public void write(File directory) throws IOException
+    {
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Can not create " + directory);
+        }
+        if (!ImageIO.write(sheet, "png", new File(directory, IMAGE_NAME)))
+        {
+            throw new IOException("No PNG writer");
+        }
+        try (PrintWriter out = new PrintWriter(new File(directory, INDEX_NAME), "UTF-8"))
+        {
+            out.print("sprites " + VERSION + " " + names.size() + "\n");
+            for (String name : names)
+            {
+                Rectangle area = areas.get(name);
+                out.print(name + " " + area.x + " " + area.y + " " + area.width + " " + area.height + "\n");
+            }
+            if (out.checkError())
+            {
+                throw new IOException("Error writing " + INDEX_NAME);
+            }
+        }
+    }
+    /**
+     * @param name the path of the image relative to the images directory, for example "b.gif"
+     * @return the image, or null if it is not in the sheet
+     */
+    public BufferedImage getImage(String name)
+    {
+        return images.get(name);
+    }
+    /**
+     * @return the names of the images in the sheet
+     */
+    public List<String> getNames()
+    {
+        return names;
+    }
+    /**
+     * @return the image every image is cut from
+     */
+    public BufferedImage getSheet()
+    {
+        return sheet;
+    }
+    /**
+     * Copies a decoded sheet to the pixel layout Java2D draws fastest. The images of the game only
+     * have fully transparent or fully opaque pixels (the corners of the cards), so they are kept
+     * with a one bit alpha, which is drawn without blending: four times faster than the bytes per
+     * channel a PNG decodes to, and faster than the GIFs were. A sheet with translucent pixels is
+     * kept premultiplied, the fastest layout that blends.
+     * @param image the sheet
+     * @return the copy
+     */
+    static BufferedImage toDrawable(BufferedImage image)
+    {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean bitmask = true;
+        WritableRaster alphas = image.getAlphaRaster();
+        if (alphas != null)
+        {
+            for (int alpha : alphas.getSamples(0, 0, width, height, 0, (int[]) null))
+            {
+                if (alpha != 0 && alpha != 0xFF)
+                {
+                    bitmask = false;
+                    break;
+                }
+            }
+        }
+        BufferedImage copy = bitmask
+                ? new BufferedImage(BITMASK_MODEL, BITMASK_MODEL.createCompatibleWritableRaster(width, height), false, null)
+                : new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D graphic = copy.createGraphics();
+        graphic.setComposite(AlphaComposite.Src);
+        graphic.drawImage(image, 0, 0, null);
+        graphic.dispose();
+        return copy;
+    }
+    /**
+     * Splits a line of the index into its fields
+     * @param line the line, or null at the end of the index
+     * @param count the number of fields expected
+     * @return the fields
+     * @throws IOException if the line does not have that many fields
+     */
+    private static String[] split(String line, int count) throws IOException
+    {
+        String[] fields = line == null ? new String[0] : line.split(" ");
+        if (fields.length != count)
+        {
+            throw new IOException("Invalid sprite index line: " + line);
+        }
+        return fields;
+    }
+    /**
+     * @param field a field of the index
+     * @return the number in the field
+     * @throws IOException if the field is not a non negative number
+     */
+    private static int parse(String field) throws IOException
+    {
+        try
+        {
+            int value = Integer.parseInt(field);
+            if (value < 0)
+            {
+                throw new IOException("Negative number in the sprite index: " + field);
+            }
+            return value;
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IOException("Invalid number in the sprite index: " + field, e);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+import java.lang.management.ManagementFactory;
+
+public final class StartupClock
+{
+    /**
+     * StartupClock.java
+     * Measures how fast the game starts: the time to the first frame, when the window first shows
+     * the table (maybe with placeholder cards), and the time to interactive, when the first frame
+     * with every image is painted and the game can be played. Both are counted from the start of
+     * main; the report printed once the game is interactive also gives the time the JVM took
+     * before main and how long decoding the images took in the background.
+     *
+     * Only the Event Dispatch Thread calls framePainted, so the times need no synchronization.
+     */
+    private static long mainNanos;
+    private static long firstFrameMillis = -1;
+    private static long interactiveMillis = -1;
+
+    private StartupClock()
+    {
+    }
+    /**
+     * Starts the clock, first thing in main
+     */
+    public static void start()
+    {
+        mainNanos = System.nanoTime();
+    }
+    /**
+     * Records that the game was painted, and reports the startup times the first time the
+     * painting is complete
+     * @param complete whether every image was ready
+     * @return whether the startup is over, after which the clock need not be called any more
+     */
+    public static boolean framePainted(boolean complete)
+    {
+        if (mainNanos == 0 || interactiveMillis >= 0)
+        {
+            return true;
+        }
+        long millis = (System.nanoTime() - mainNanos) / 1000000;
+        if (firstFrameMillis < 0)
+        {
+            firstFrameMillis = millis;
+        }
+        if (!complete)
+        {
+            return false;
+        }
+        interactiveMillis = millis;
+        long beforeMain = ManagementFactory.getRuntimeMXBean().getUptime() - millis;
+        System.out.println("Startup: first frame after " + firstFrameMillis + " ms, interactive after "
+                + interactiveMillis + " ms (from main; the JVM started " + beforeMain + " ms before main,"
+                + " the images were decoded in " + AssetLoader.getLoadMillis() + " ms)");
+        return true;
+    }
+    /**
+     * @return the time from main to the first frame in milliseconds, or -1 if no frame was painted
+     */
+    public static long getFirstFrameMillis()
+    {
+        return firstFrameMillis;
+    }
+    /**
+     * @return the time from main to the first complete frame in milliseconds, or -1 if none was painted
+     */
+    public static long getInteractiveMillis()
+    {
+        return interactiveMillis;
+    }
+}
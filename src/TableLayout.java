@@ -0,0 +1,230 @@
+import java.awt.Rectangle;
+
+public final class TableLayout
+{
+    /**
+     * TableLayout.java
+     * Where everything is on the table for a size of the panel and a scale factor of the screen.
+     * The table is designed at REFERENCE_WIDTH x REFERENCE_HEIGHT with cards the size of their
+     * images; a layout zooms that design to fit the panel, keeping its proportions and centering
+     * it horizontally, and rounds every position and length to whole pixels. At the reference size
+     * the zoom is 1 and every card is drawn at the size of its image.
+     *
+     * The scale factor is the number of device pixels per pixel of the panel (2 on most HiDPI
+     * screens). It does not change the layout, only the size of the images drawn: a card is
+     * getCardWidth() pixels wide on the panel but getCardPixelWidth() pixels wide on the screen,
+     * which is the size its image is scaled to in advance (see ScaledImageCache).
+     *
+     * A layout is immutable; GamePanel makes a new one when it is resized.
+     */
+    public static final int REFERENCE_WIDTH = 800;
+    public static final int REFERENCE_HEIGHT = 660;
+    /**
+     * The smallest zoom; below it the cards get too small to read and the panel is cropped
+     */
+    public static final double MIN_ZOOM = 0.5;
+    /**
+     * How far from 1 a zoom is rounded to 1
+     */
+    private static final double SNAP = 0.02;
+    /**
+     * Horizontal space between two piles, and left of the first one
+     */
+    public static final int PILE_SPACE = 35;
+    /**
+     * Vertical space between two cards of a main pile
+     */
+    public static final int FAN_SPACE = 22;
+    /**
+     * Horizontal space between the waste and its top card
+     */
+    public static final int WASTE_SPACE = 26;
+    public static final int MAIN_PILE_Y = 200;
+    public static final int SUIT_PILE_Y = 50;
+    public static final int RAZVAN_X = 720;
+    public static final int RAZVAN_Y = 600;
+    public static final int RAZVAN_SIZE = 64;
+    /**
+     * The layout of a panel of the reference size on a screen without scaling
+     */
+    public static final TableLayout DEFAULT = new TableLayout(REFERENCE_WIDTH, REFERENCE_HEIGHT, 1);
+
+    private final int width, height;
+    private final double scale;
+    private final double zoom;
+    private final int offsetX;
+    private final int cardWidth, cardHeight;
+    private final int fanSpace, wasteSpace;
+
+    /**
+     * Computes the layout of a panel
+     * @param width the width of the panel
+     * @param height the height of the panel
+     * @param scale the number of device pixels per pixel of the panel
+     */
+    public TableLayout(int width, int height, double scale)
+    {
+        this.width = width;
+        this.height = height;
+        this.scale = scale > 0 ? scale : 1;
+        double fit = Math.max(MIN_ZOOM, Math.min((double) width / REFERENCE_WIDTH, (double) height / REFERENCE_HEIGHT));
+        // close to the reference size the images are drawn as they are rather than scaled by a few pixels
+        zoom = Math.abs(fit - 1) < SNAP ? 1 : fit;
+        offsetX = Math.max(0, (width - (int) Math.round(REFERENCE_WIDTH * zoom)) / 2);
+        cardWidth = length(Card.WIDTH);
+        cardHeight = length(Card.HEIGHT);
+        fanSpace = length(FAN_SPACE);
+        wasteSpace = length(WASTE_SPACE);
+    }
+    /**
+     * @param referenceX an x coordinate on the reference table
+     * @return the x coordinate on the panel
+     */
+    public int x(int referenceX)
+    {
+        return offsetX + (int) Math.round(referenceX * zoom);
+    }
+    /**
+     * @param referenceY a y coordinate on the reference table
+     * @return the y coordinate on the panel
+     */
+    public int y(int referenceY)
+    {
+        return (int) Math.round(referenceY * zoom);
+    }
+    /**
+     * @param referenceLength a length on the reference table
+     * @return the length on the panel, at least 1
+     */
+    public int length(int referenceLength)
+    {
+        return Math.max(1, (int) Math.round(referenceLength * zoom));
+    }
+    /**
+     * Sets an area to the place of an area of the reference table
+     * @param reference the area on the reference table
+     * @param area the area to set
+     * @return area
+     */
+    public Rectangle scale(Rectangle reference, Rectangle area)
+    {
+        area.setBounds(x(reference.x), y(reference.y), length(reference.width), length(reference.height));
+        return area;
+    }
+    /**
+     * @param length a length on the panel
+     * @return the number of device pixels it covers
+     */
+    public int toPixels(int length)
+    {
+        return Math.max(1, (int) Math.round(length * scale));
+    }
+    /**
+     * @param index the index of a main pile, from 0 to 6
+     * @return the x location of the pile
+     */
+    public int getMainPileX(int index)
+    {
+        return x(PILE_SPACE + index * (PILE_SPACE + Card.WIDTH));
+    }
+    public int getMainPileY()
+    {
+        return y(MAIN_PILE_Y);
+    }
+    /**
+     * @param index the index of a suit pile, from 0 to 3; they are above the last four main piles
+     * @return the x location of the pile
+     */
+    public int getSuitPileX(int index)
+    {
+        return getMainPileX(index + KlondikeState.MAIN_PILE_COUNT - KlondikeState.SUIT_PILE_COUNT);
+    }
+    public int getSuitPileY()
+    {
+        return y(SUIT_PILE_Y);
+    }
+    /**
+     * @return the x location of the deck, in the top left corner
+     */
+    public int getDeckX()
+    {
+        return x(0);
+    }
+    public int getDeckY()
+    {
+        return y(0);
+    }
+    /**
+     * @return the x location of the waste, right of the deck
+     */
+    public int getWasteX()
+    {
+        return x(Card.WIDTH + PILE_SPACE);
+    }
+    public int getCardWidth()
+    {
+        return cardWidth;
+    }
+    public int getCardHeight()
+    {
+        return cardHeight;
+    }
+    /**
+     * @return the vertical space between two cards of a main pile
+     */
+    public int getFanSpace()
+    {
+        return fanSpace;
+    }
+    /**
+     * @return the horizontal space between the waste and its top card
+     */
+    public int getWasteSpace()
+    {
+        return wasteSpace;
+    }
+    /**
+     * @return the width of a card on the screen, in device pixels
+     */
+    public int getCardPixelWidth()
+    {
+        return toPixels(cardWidth);
+    }
+    /**
+     * @return the height of a card on the screen, in device pixels
+     */
+    public int getCardPixelHeight()
+    {
+        return toPixels(cardHeight);
+    }
+    /**
+     * @return the zoom from the reference table to the panel
+     */
+    public double getZoom()
+    {
+        return zoom;
+    }
+    /**
+     * @return the number of device pixels per pixel of the panel
+     */
+    public double getScale()
+    {
+        return scale;
+    }
+    public int getWidth()
+    {
+        return width;
+    }
+    public int getHeight()
+    {
+        return height;
+    }
+    /**
+     * @param other another layout
+     * @return whether the other layout is for the same panel size and scale factor
+     */
+    public boolean sameAs(TableLayout other)
+    {
+        return other != null && width == other.width && height == other.height && scale == other.scale;
+    }
+}
@@ -0,0 +1,83 @@
+final class Zobrist
+{
+    /**
+     * Zobrist.java
+     * The random keys KlondikeState xors together to hash a position. There is one key for every
+     * card at every depth of every main pile, for every face down count of every main pile, for
+     * every card on a suit pile and for every card at every depth of the stock and of the waste.
+     * The keys come from a fixed seed so hashes are the same on every run.
+     */
+    private Zobrist()
+    {
+    }
+
+    private static final int CARDS = CardCode.COUNT;
+
+    private static final long[] MAIN = new long[KlondikeState.MAIN_PILE_COUNT * KlondikeState.MAIN_PILE_CAPACITY * CARDS];
+    private static final long[] FACE_DOWN = new long[KlondikeState.MAIN_PILE_COUNT * KlondikeState.MAIN_PILE_COUNT];
+    private static final long[] SUIT = new long[CARDS];
+    private static final long[] STOCK = new long[KlondikeState.STOCK_CAPACITY * CARDS];
+    private static final long[] WASTE = new long[KlondikeState.STOCK_CAPACITY * CARDS];
+
+    static
+    {
+        long seed = 0x5EED5011L;
+        long[][] tables = {MAIN, FACE_DOWN, SUIT, STOCK, WASTE};
+        for (long[] table : tables)
+        {
+            for (int i = 0; i < table.length; i++)
+            {
+                seed += 0x9E3779B97F4A7C15L;
+                long z = seed;
+                z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+                z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+                table[i] = z ^ (z >>> 31);
+            }
+        }
+    }
+    /**
+     * @param pile the index of the main pile
+     * @param depth the position in the pile
+     * @param code the card code
+     * @return the key of the card at that position
+     */
+    static long main(int pile, int depth, int code)
+    {
+        return MAIN[(pile * KlondikeState.MAIN_PILE_CAPACITY + depth) * CARDS + CardCode.ordinal(code)];
+    }
+    /**
+     * @param pile the index of the main pile
+     * @param count the number of face down cards in the pile
+     * @return the key of the face down count
+     */
+    static long faceDown(int pile, int count)
+    {
+        return FACE_DOWN[pile * KlondikeState.MAIN_PILE_COUNT + count];
+    }
+    /**
+     * @param code the card code
+     * @return the key of the card lying on its suit pile; which of the four piles does not matter
+     */
+    static long suit(int code)
+    {
+        return SUIT[CardCode.ordinal(code)];
+    }
+    /**
+     * @param depth the position in the stock
+     * @param code the card code
+     * @return the key of the card at that position
+     */
+    static long stock(int depth, int code)
+    {
+        return STOCK[depth * CARDS + CardCode.ordinal(code)];
+    }
+    /**
+     * @param depth the position in the waste
+     * @param code the card code
+     * @return the key of the card at that position
+     */
+    static long waste(int depth, int code)
+    {
+        return WASTE[depth * CARDS + CardCode.ordinal(code)];
+    }
+}